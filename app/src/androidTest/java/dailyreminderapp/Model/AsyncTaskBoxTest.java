@@ -0,0 +1,153 @@
+package dailyreminderapp.Model;
+
+import android.os.Looper;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that AsyncTaskBox runs calls off the main thread, in the order they were made,
+ * and hands their results to the main thread unless they were cancelled.
+ */
+public class AsyncTaskBoxTest extends AndroidTestCase {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final AsyncTaskBox taskBox = new AsyncTaskBox();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TaskBox.setStore(new InMemoryTaskStore());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TaskBox.setStore(null);
+        super.tearDown();
+    }
+
+    public void testResultIsHandedToTheMainThread() throws Exception {
+        final List<Boolean> onMainThread = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        taskBox.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return Looper.myLooper() == Looper.getMainLooper();
+            }
+        }, new AsyncTaskBox.Callback<Boolean>() {
+            @Override
+            public void onResult(Boolean ranOnMainThread) {
+                onMainThread.add(ranOnMainThread);
+                onMainThread.add(Looper.myLooper() == Looper.getMainLooper());
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertFalse(onMainThread.get(0));
+        assertTrue(onMainThread.get(1));
+    }
+
+    public void testReadsSeeEarlierWrites() throws Exception {
+        final List<Alarm> saved = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Alarm alarm = new Alarm();
+        alarm.setTaskName("Vitamins");
+        alarm.setHour(8);
+        alarm.setDaysMask(0x7f);
+        taskBox.saveAlarm(getContext(), alarm, null);
+        taskBox.getAlarms(getContext(), 1, new AsyncTaskBox.Callback<List<Alarm>>() {
+            @Override
+            public void onResult(List<Alarm> alarms) {
+                saved.addAll(alarms);
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, saved.size());
+        assertEquals("Vitamins", saved.get(0).getTaskName());
+    }
+
+    public void testCancelledCallIsNotHandedBack() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<String> results = new ArrayList<>();
+
+        taskBox.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws InterruptedException {
+                release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                return null;
+            }
+        }, null);
+        Future<String> cancelled = taskBox.submit(result("cancelled"), collect(results, null));
+        taskBox.submit(result("last"), collect(results, done));
+
+        cancelled.cancel(false);
+        release.countDown();
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, results.size());
+        assertEquals("last", results.get(0));
+    }
+
+    public void testFullQueueRejectsUntilCancelledCallsMakeRoom() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            taskBox.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws InterruptedException {
+                    started.countDown();
+                    release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    return null;
+                }
+            }, null);
+            assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+            List<Future<String>> queued = new ArrayList<>();
+            for (int i = 0; i < AsyncTaskBox.QUEUE_CAPACITY; i++)
+                queued.add(taskBox.submit(result("queued"), null));
+            try {
+                taskBox.submit(result("rejected"), null);
+                fail("A call was queued beyond the capacity");
+            } catch (RejectedExecutionException expected) {
+            }
+
+            queued.get(0).cancel(false);
+            taskBox.submit(result("after cancel"), null);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static Callable<String> result(final String result) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return result;
+            }
+        };
+    }
+
+    private static AsyncTaskBox.Callback<String> collect(final List<String> results, final CountDownLatch done) {
+        return new AsyncTaskBox.Callback<String>() {
+            @Override
+            public void onResult(String result) {
+                results.add(result);
+                if (done != null)
+                    done.countDown();
+            }
+        };
+    }
+}
@@ -0,0 +1,243 @@
+package dailyreminderapp.Model;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Times the database paths the screens depend on, on a device, in a scratch database.
+ * Each test logs the path against what it replaced; read them with adb logcat -s
+ * DbHelperBenchmarkTest. A path fails only on missing an absolute budget, or on not beating
+ * what it replaced by a wide margin in the best of several runs, so a noisy run does not fail it.
+ */
+public class DbHelperBenchmarkTest extends AndroidTestCase {
+
+    private static final String TAG = "DbHelperBenchmarkTest";
+    private static final String DATABASE_NAME = "benchmark_test";
+
+    private static final int TASKS = 1000;
+    private static final int ALARMS_PER_TASK = 3;
+
+    private static final int RUNS = 5;
+    // How many times faster the shared helper must load, in the best runs
+    private static final int SHARED_MARGIN = 2;
+
+    private static final int BULK_ALARMS = 10000;
+    // Alarms one transaction has to store per second
+    private static final int MIN_INSERTS_PER_SECOND = 10000;
+
+    private static final int MANY_TASKS = 10000;
+    private static final int SAVES = 1000;
+    // Mean time of checking a task exists and saving an alarm for it
+    private static final long SAVE_BUDGET_MICROS = 5000;
+
+    private DbHelper helper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getContext().deleteDatabase(DATABASE_NAME);
+        helper = new DbHelper(getContext(), DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TaskBox.setStore(null);
+        helper.close();
+        getContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    /**
+     * Loads the Task Box screen, every task and then the alarms of each, once opening and
+     * closing a helper for every call as TaskBox used to and once through the shared helper.
+     * The best of several runs of each is compared.
+     */
+    public void testTaskBoxLoadWithOneOpenDatabase() {
+        insertTasks(TASKS, ALARMS_PER_TASK);
+
+        long perCall = Long.MAX_VALUE;
+        long shared = Long.MAX_VALUE;
+        int cycles = 0;
+        for (int run = 0; run < RUNS; run++) {
+            cycles = 0;
+            long start = System.nanoTime();
+            DbHelper opened = new DbHelper(getContext(), DATABASE_NAME);
+            List<Task> tasks = opened.getAllTasks();
+            opened.close();
+            cycles++;
+            for (Task task : tasks) {
+                opened = new DbHelper(getContext(), DATABASE_NAME);
+                opened.getAllAlarmsByTask(task.getTaskName());
+                opened.close();
+                cycles++;
+            }
+            perCall = Math.min(perCall, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (Task task : helper.getAllTasks())
+                helper.getAllAlarmsByTask(task.getTaskName());
+            shared = Math.min(shared, System.nanoTime() - start);
+        }
+
+        Log.i(TAG, "Task Box load of " + TASKS + " tasks, best of " + RUNS + ": " + millis(perCall) + " ms with "
+                + cycles + " open/close cycles, " + millis(shared) + " ms with the shared helper, "
+                + (cycles - 1) + " cycles saved");
+        assertEquals(TASKS + 1, cycles);
+        assertTrue("shared " + millis(shared) + " ms, per call " + millis(perCall) + " ms",
+                shared * SHARED_MARGIN < perCall);
+    }
+
+    /**
+     * Looks every task and its alarms up once, with the name pasted into the sql as the
+     * lookups used to and with bound arguments. The task id is read by the cached statement of
+     * a helper whose id cache is empty, so every lookup runs it. The difference is too small
+     * to be told from noise in one run, so the latencies are only reported.
+     */
+    public void testBoundLookupLatency() {
+        insertTasks(TASKS, ALARMS_PER_TASK);
+        List<Task> tasks = helper.getAllTasks();
+        SQLiteDatabase db = helper.getReadableDatabase();
+
+        long start = System.nanoTime();
+        for (Task task : tasks) {
+            Cursor c = db.rawQuery("SELECT id FROM task WHERE taskName = '" + task.getTaskName() + "'", null);
+            c.moveToFirst();
+            c.close();
+        }
+        long idByLiteral = System.nanoTime() - start;
+
+        DbHelper uncached = new DbHelper(getContext(), DATABASE_NAME);
+        uncached.getReadableDatabase();
+        start = System.nanoTime();
+        for (Task task : tasks)
+            uncached.getTaskId(task.getTaskName());
+        long idByStatement = System.nanoTime() - start;
+        uncached.close();
+
+        start = System.nanoTime();
+        for (Task task : tasks)
+            readAll(db.rawQuery(DbHelper.SELECT_ALARMS_BY_TASK.replace("?", "'" + task.getTaskName() + "'"), null));
+        long alarmsByLiteral = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (Task task : tasks)
+            readAll(db.rawQuery(DbHelper.SELECT_ALARMS_BY_TASK, new String[]{task.getTaskName()}));
+        long alarmsByArgument = System.nanoTime() - start;
+
+        Log.i(TAG, "task id by name: " + micros(idByLiteral, TASKS) + " us/call with the name in the sql, "
+                + micros(idByStatement, TASKS) + " us/call with the cached statement");
+        Log.i(TAG, "alarms by task: " + micros(alarmsByLiteral, TASKS) + " us/call with the name in the sql, "
+                + micros(alarmsByArgument, TASKS) + " us/call with a bound argument");
+        assertEquals(TASKS, tasks.size());
+    }
+
+    /**
+     * Stores 10,000 alarms of one task in one transaction, and a tenth of them one transaction
+     * each for comparison
+     */
+    public void testBulkAlarmInsertRate() {
+        Task task = new Task();
+        task.setTaskName("Bulk");
+        long taskId = helper.createTask(task);
+
+        List<Alarm> alarms = newAlarms(task.getTaskName(), BULK_ALARMS);
+        long start = System.nanoTime();
+        helper.createAlarms(alarms, taskId);
+        long bulk = System.nanoTime() - start;
+
+        List<Alarm> single = newAlarms(task.getTaskName(), BULK_ALARMS / 10);
+        start = System.nanoTime();
+        for (Alarm alarm : single)
+            helper.createAlarm(alarm, taskId);
+        long oneByOne = System.nanoTime() - start;
+
+        long bulkRate = BULK_ALARMS * 1000000000L / bulk;
+        Log.i(TAG, "alarm inserts: " + bulkRate + "/s in one transaction, "
+                + single.size() * 1000000000L / oneByOne + "/s one transaction each");
+        assertTrue(bulkRate + " inserts/s", bulkRate >= MIN_INSERTS_PER_SECOND);
+    }
+
+    /**
+     * Saves alarms for tasks among 10,000, as the add and edit screens do: checking the task
+     * exists and saving the alarm. The existence check that loaded every task and compared
+     * the names is timed for comparison.
+     */
+    public void testSaveAlarmWithTenThousandTasks() {
+        insertTasks(MANY_TASKS, 1);
+        TaskBox.setStore(helper);
+        TaskBox taskBox = new TaskBox();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < SAVES; i++) {
+            String taskName = "Task " + (i * 7 % MANY_TASKS);
+            assertTrue(taskBox.taskExist(getContext(), taskName));
+            taskBox.saveAlarm(getContext(), newAlarms(taskName, 1).get(0));
+        }
+        long saves = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < SAVES / 100; i++) {
+            String taskName = "Task " + (i * 7 % MANY_TASKS);
+            boolean exists = false;
+            for (Task task : helper.getAllTasks())
+                exists |= task.getTaskName().equals(taskName);
+            assertTrue(exists);
+        }
+        long scans = System.nanoTime() - start;
+
+        Log.i(TAG, "with " + MANY_TASKS + " tasks: " + micros(saves, SAVES) + " us per save, "
+                + micros(scans, SAVES / 100) + " us per existence check loading every task");
+        assertTrue(micros(saves, SAVES) + " us per save", micros(saves, SAVES) < SAVE_BUDGET_MICROS);
+        assertEquals(MANY_TASKS, helper.getAllTasks().size());
+    }
+
+    /** Fills the scratch database with tasks and their alarms, in one transaction */
+    private void insertTasks(int tasks, int alarmsPerTask) {
+        List<Alarm> alarms = new ArrayList<>();
+        for (int t = 0; t < tasks; t++) {
+            for (int i = 0; i < alarmsPerTask; i++) {
+                Alarm alarm = new Alarm();
+                alarm.setTaskName("Task " + t);
+                alarm.setHour((t + i) % 24);
+                alarm.setMinute((t * 7 + i) % 60);
+                alarm.setDaysMask(1 + (t + i) % 0x7f);
+                alarms.add(alarm);
+            }
+        }
+        helper.createAlarms(alarms, new HashMap<String, Long>());
+    }
+
+    /** @return alarms of a task at every minute of the day in turn, going off on weekdays */
+    private static List<Alarm> newAlarms(String taskName, int count) {
+        List<Alarm> alarms = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Alarm alarm = new Alarm();
+            alarm.setTaskName(taskName);
+            alarm.setHour(i / 60 % 24);
+            alarm.setMinute(i % 60);
+            alarm.setDaysMask(0x3e);
+            alarms.add(alarm);
+        }
+        return alarms;
+    }
+
+    private static void readAll(Cursor c) {
+        while (c.moveToNext())
+            c.getLong(0);
+        c.close();
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    private static long micros(long nanos, int calls) {
+        return nanos / 1000 / calls;
+    }
+}
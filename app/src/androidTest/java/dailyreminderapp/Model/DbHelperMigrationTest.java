@@ -0,0 +1,118 @@
+package dailyreminderapp.Model;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+
+/**
+ * Writes a database of version 3, the oldest that is migrated, with 100,000 histories and
+ * opens it through DbHelper, which runs every migration up to the current version. The
+ * upgrade has to keep every row and finish within a fixed budget.
+ */
+public class DbHelperMigrationTest extends AndroidTestCase {
+
+    private static final String TAG = "DbHelperMigrationTest";
+    private static final String DATABASE_NAME = "migration_test";
+
+    private static final int TASKS = 50;
+    private static final int HISTORIES = 100000;
+    // Opening the database, as on the first start after the app is updated
+    private static final long BUDGET_MILLIS = 20000;
+
+    private DbHelper helper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getContext().deleteDatabase(DATABASE_NAME);
+        writeVersion3();
+        helper = new DbHelper(getContext(), DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        helper.close();
+        getContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testMigratesAHundredThousandHistoriesInTime() {
+        long start = System.currentTimeMillis();
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long took = System.currentTimeMillis() - start;
+
+        Log.i(TAG, HISTORIES + " histories migrated from version 3 in " + took + " ms");
+        assertTrue("Took " + took + " ms", took < BUDGET_MILLIS);
+
+        assertEquals(HISTORIES, DatabaseUtils.queryNumEntries(db, "histories"));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, "histories", "done_at = 0 OR task_id IS NULL"));
+        assertEquals(TASKS, DatabaseUtils.queryNumEntries(db, "task"));
+        assertEquals(TASKS, DatabaseUtils.queryNumEntries(db, "alarms"));
+    }
+
+    /**
+     * Writes the schema of version 3 as it was created then: tasks, one alarms row per day
+     * linked to its task by task_alarm, and histories with only a date string and a time
+     */
+    private void writeVersion3() {
+        File file = getContext().getDatabasePath(DATABASE_NAME);
+        file.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        try {
+            db.execSQL("create table task(id integer primary key not null, taskName text not null)");
+            db.execSQL("create table alarms(id integer primary key, intent text, hour integer,"
+                    + " minute integer, taskName text not null, day_of_week integer)");
+            db.execSQL("create table task_alarm(id integer primary key not null,"
+                    + " task_id integer not null, alarm_id integer not null)");
+            db.execSQL("CREATE TABLE histories(id integer primary key, taskName text not null,"
+                    + " date text, hour integer, minute integer )");
+
+            db.beginTransaction();
+            try {
+                /** Every task has one alarm at 8:00 on the days of the week, a row for each */
+                for (int t = 1; t <= TASKS; t++) {
+                    db.execSQL("INSERT INTO task(id, taskName) VALUES (?, ?)", new Object[]{t, "Task " + t});
+                    for (int day = 1; day <= 7; day++) {
+                        long alarmId = (t - 1) * 7 + day;
+                        db.execSQL("INSERT INTO alarms(id, hour, minute, taskName, day_of_week)"
+                                + " VALUES (?, 8, 0, ?, ?)", new Object[]{alarmId, "Task " + t, day});
+                        db.execSQL("INSERT INTO task_alarm(task_id, alarm_id) VALUES (?, ?)",
+                                new Object[]{t, alarmId});
+                    }
+                }
+
+                SimpleDateFormat format = new SimpleDateFormat("MMM d, yyyy");
+                Calendar day = Calendar.getInstance();
+                day.clear();
+                day.set(2012, Calendar.JANUARY, 1);
+                SQLiteStatement insert = db.compileStatement("INSERT INTO histories"
+                        + "(taskName, date, hour, minute) VALUES (?, ?, ?, ?)");
+                try {
+                    for (int i = 0; i < HISTORIES; i++) {
+                        if (i % TASKS == 0)
+                            day.add(Calendar.DAY_OF_YEAR, 1);
+                        insert.bindString(1, "Task " + (i % TASKS + 1));
+                        insert.bindString(2, format.format(day.getTime()));
+                        insert.bindLong(3, i % 24);
+                        insert.bindLong(4, i % 60);
+                        insert.executeInsert();
+                    }
+                } finally {
+                    insert.close();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            db.setVersion(3);
+        } finally {
+            db.close();
+        }
+    }
+}
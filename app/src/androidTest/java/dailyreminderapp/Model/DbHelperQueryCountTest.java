@@ -0,0 +1,82 @@
+package dailyreminderapp.Model;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts the queries DbHelper runs to load the alarms of a task, through a cursor factory
+ * that sees every query. Loading a task is one query however many alarms it has.
+ */
+public class DbHelperQueryCountTest extends AndroidTestCase {
+
+    private final List<String> queries = new ArrayList<>();
+    private DbHelper helper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        helper = new DbHelper(null, null, new SQLiteDatabase.CursorFactory() {
+            @Override
+            public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver,
+                                    String editTable, SQLiteQuery query) {
+                queries.add(query.toString());
+                return new SQLiteCursor(driver, editTable, query);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        helper.close();
+        super.tearDown();
+    }
+
+    public void testTaskLoadIsOneQuery() {
+        insertTask("Vitamins", 7);
+
+        queries.clear();
+        List<Alarm> alarms = helper.getAllAlarmsByTask("Vitamins");
+
+        assertEquals(7, alarms.size());
+        assertEquals(queries.toString(), 1, queries.size());
+    }
+
+    public void testQueriesDoNotGrowWithAlarms() {
+        insertTask("Few", 1);
+        insertTask("Many", 100);
+
+        queries.clear();
+        helper.getAllAlarmsByTask("Few");
+        int few = queries.size();
+
+        queries.clear();
+        helper.getAllAlarmsByTask("Many");
+
+        assertEquals(few, queries.size());
+    }
+
+    /** Stores a task with alarms at different times, each going off every day */
+    private void insertTask(String taskName, int alarmCount) {
+        Task task = new Task();
+        task.setTaskName(taskName);
+        long taskId = helper.createTask(task);
+
+        List<Alarm> alarms = new ArrayList<>();
+        for (int i = 0; i < alarmCount; i++) {
+            Alarm alarm = new Alarm();
+            alarm.setTaskName(taskName);
+            alarm.setHour(i / 60 % 24);
+            alarm.setMinute(i % 60);
+            alarm.setDaysMask(0x7f);
+            alarms.add(alarm);
+        }
+        helper.createAlarms(alarms, taskId);
+    }
+}
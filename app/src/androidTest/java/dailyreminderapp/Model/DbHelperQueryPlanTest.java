@@ -0,0 +1,98 @@
+package dailyreminderapp.Model;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs EXPLAIN QUERY PLAN on every query and delete statement of DbHelper and fails
+ * when one of them does not search an index: a scan of a whole table, or a walk of a whole
+ * index, fails as well. Every static SELECT_ or DELETE_ string in DbHelper is picked up, so
+ * new queries are checked without being added here.
+ */
+public class DbHelperQueryPlanTest extends AndroidTestCase {
+
+    /**
+     * Queries that are meant to read every row of their table. Alarms by day tests a bit of
+     * days_mask, which no index can serve, on a table with only one row per alarm.
+     * All snoozes are read in fire_at order by walking the whole fire_at index.
+     * The compaction query only scans its own subquery, a range of the done_at index
+     * bounded by the batch size.
+     */
+    private static final List<String> WHOLE_TABLE_READS = Arrays.asList(
+            "SELECT_ALL_TASKS",
+            "SELECT_ALL_ALARMS",
+            "SELECT_ALARMS_BY_DAY",
+            "SELECT_ALL_HISTORY",
+            "SELECT_ALL_SNOOZES",
+            "SELECT_LEGACY_REQUEST_CODES",
+            "SELECT_OLDEST_HISTORIES_BY_DAY");
+
+    private DbHelper helper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        helper = new DbHelper(getContext(), null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        helper.close();
+        super.tearDown();
+    }
+
+    public void testEveryQuerySearchesAnIndex() throws Exception {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        int checked = 0;
+
+        for (Field field : DbHelper.class.getDeclaredFields()) {
+            String name = field.getName();
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class)
+                continue;
+            if (!name.startsWith("SELECT_") && !name.startsWith("DELETE_"))
+                continue;
+            if (WHOLE_TABLE_READS.contains(name))
+                continue;
+
+            field.setAccessible(true);
+            String sql = (String) field.get(null);
+            String plan = explain(db, sql);
+
+            assertTrue(name + " does not search an index: " + plan, isIndexSearch(plan));
+            checked++;
+        }
+        assertTrue("no queries were found to check", checked > 0);
+    }
+
+    /** Returns the detail lines of the query plan, one per line */
+    private String explain(SQLiteDatabase db, String sql) {
+        StringBuilder plan = new StringBuilder();
+        Cursor c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        int detailIndex = c.getColumnIndex("detail");
+        while (c.moveToNext())
+            plan.append(c.getString(detailIndex)).append('\n');
+        c.close();
+        return plan.toString();
+    }
+
+    /**
+     * An index search shows up as "SEARCH TABLE x USING ..." (older SQLite) or "SEARCH x
+     * USING ..." (newer SQLite). Every "SCAN" line reads a whole table or index, even with a
+     * "USING INDEX" or "USING COVERING INDEX" part, so the plan must have none of them.
+     */
+    private boolean isIndexSearch(String plan) {
+        boolean searched = false;
+        for (String line : plan.split("\n")) {
+            if (line.startsWith("SCAN"))
+                return false;
+            searched |= line.startsWith("SEARCH");
+        }
+        return searched;
+    }
+}
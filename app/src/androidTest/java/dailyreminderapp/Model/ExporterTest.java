@@ -0,0 +1,130 @@
+package dailyreminderapp.Model;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.test.AndroidTestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Exports a million histories and checks that every row is written while the heap stays
+ * small. Holding the rows as History objects, as getHistory() does, would take well over
+ * a hundred megabytes.
+ */
+public class ExporterTest extends AndroidTestCase {
+    private static final String DATABASE_NAME = "exporter_test";
+    private static final int ROWS = 1000000;
+
+    /** Most the heap in use may grow by during an export */
+    private static final long MAX_HEAP_GROWTH = 16 * 1024 * 1024;
+
+    private DbHelper helper;
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getContext().deleteDatabase(DATABASE_NAME);
+        helper = new DbHelper(getContext(), DATABASE_NAME);
+        file = new File(getContext().getCacheDir(), "exporter_test.out");
+        insertHistories();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        helper.close();
+        getContext().deleteDatabase(DATABASE_NAME);
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testCsvExportOfAMillionHistories() throws Exception {
+        long heapGrowth = exportAndMeasure(Exporter.Format.CSV);
+
+        assertEquals(ROWS + 1, countLines());
+        assertTrue("heap grew by " + heapGrowth + " bytes", heapGrowth < MAX_HEAP_GROWTH);
+    }
+
+    public void testJsonExportOfAMillionHistories() throws Exception {
+        long heapGrowth = exportAndMeasure(Exporter.Format.JSON);
+
+        assertEquals(ROWS, countLines());
+        assertTrue("heap grew by " + heapGrowth + " bytes", heapGrowth < MAX_HEAP_GROWTH);
+    }
+
+    /** Fills the histories table in one transaction, names need quoting in both formats */
+    private void insertHistories() {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        SQLiteStatement insert = db.compileStatement(DbHelper.INSERT_HISTORY);
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                insert.bindString(1, "task \"" + (i % 50) + "\", daily");
+                insert.bindString(2, "Jan 1, 2016");
+                insert.bindLong(3, i % 24);
+                insert.bindLong(4, i % 60);
+                insert.bindLong(5, 1451606400000L + i * 60000L);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Exports the histories while another thread samples the heap
+     * @return the most the heap in use grew by over the export
+     */
+    private long exportAndMeasure(Exporter.Format format) throws Exception {
+        final Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        final long before = runtime.totalMemory() - runtime.freeMemory();
+        final long[] peak = {before};
+        final boolean[] done = {false};
+
+        Thread sampler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    synchronized (done) {
+                        if (done[0])
+                            return;
+                    }
+                    peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory());
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        sampler.start();
+        try {
+            new Exporter(helper).exportHistory(file, format);
+        } finally {
+            synchronized (done) {
+                done[0] = true;
+            }
+            sampler.join();
+        }
+        return peak[0] - before;
+    }
+
+    private int countLines() throws IOException {
+        int lines = 0;
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            while (reader.readLine() != null)
+                lines++;
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,134 @@
+package dailyreminderapp.Model;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Simulates five years of use, two tasks done four times a day each, compacting histories
+ * older than a year at the end of every month as HistoryCompactionService does. Once the
+ * first year is over the raw histories stop growing, the database only grows by the small
+ * daily totals, and reading the last 30 days stays within a budget.
+ * Each year is logged; read it with adb logcat -s HistoryCompactionTest.
+ */
+public class HistoryCompactionTest extends AndroidTestCase {
+
+    private static final String TAG = "HistoryCompactionTest";
+    private static final String DATABASE_NAME = "compaction_test";
+
+    private static final int YEARS = 5;
+    private static final String[] TASK_NAMES = {"Vitamins", "Walk"};
+    private static final int[] HOURS_DONE = {8, 12, 16, 20};
+    private static final int HORIZON_DAYS = 365;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    // Most a 30 day range query may take, on average
+    private static final long QUERY_BUDGET_MICROS = 20000;
+    private static final int QUERY_CALLS = 20;
+
+    private DbHelper helper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getContext().deleteDatabase(DATABASE_NAME);
+        helper = new DbHelper(getContext(), DATABASE_NAME);
+        TaskBox.setStore(helper);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TaskBox.setStore(null);
+        helper.close();
+        getContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testSizeAndLatencyStayFlatOverYears() {
+        TaskBox taskBox = new TaskBox();
+        Calendar day = Calendar.getInstance();
+        day.clear();
+        day.set(2011, Calendar.JANUARY, 1);
+
+        int done = 0;
+        long[] rawRows = new long[YEARS];
+        long[] usedBytes = new long[YEARS];
+        long[] queryMicros = new long[YEARS];
+
+        for (int month = 0; month < YEARS * 12; month++) {
+            List<History> histories = new ArrayList<>();
+            int monthOfYear = day.get(Calendar.MONTH);
+            while (day.get(Calendar.MONTH) == monthOfYear) {
+                for (int hour : HOURS_DONE) {
+                    for (String taskName : TASK_NAMES)
+                        histories.add(newHistory(taskName, day, hour));
+                }
+                day.add(Calendar.DAY_OF_YEAR, 1);
+            }
+            taskBox.addToHistory(getContext(), histories);
+            done += histories.size();
+
+            long now = day.getTimeInMillis();
+            taskBox.compactHistory(getContext(), now - HORIZON_DAYS * DAY);
+
+            if (month % 12 == 11) {
+                int year = month / 12;
+                rawRows[year] = DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), "histories");
+                usedBytes[year] = usedBytes();
+                queryMicros[year] = timeLast30Days(taskBox, now);
+                Log.i(TAG, "year " + (year + 1) + ": " + rawRows[year] + " raw histories, "
+                        + usedBytes[year] / 1024 + " KB used, 30 day query " + queryMicros[year] + " us");
+            }
+        }
+
+        /** Every completion is kept, raw or in the totals */
+        assertEquals(done, countDone());
+
+        int maxRawRows = (HORIZON_DAYS + 31) * HOURS_DONE.length * TASK_NAMES.length;
+        for (int year = 1; year < YEARS; year++) {
+            assertTrue("year " + (year + 1) + ": " + rawRows[year] + " raw histories", rawRows[year] <= maxRawRows);
+            assertTrue("year " + (year + 1) + ": " + queryMicros[year] + " us", queryMicros[year] < QUERY_BUDGET_MICROS);
+        }
+        /** Without compaction it would grow by a year of raw histories, the size it has after the first */
+        for (int year = 2; year < YEARS; year++) {
+            long growth = usedBytes[year] - usedBytes[year - 1];
+            assertTrue("year " + (year + 1) + ": grew by " + growth + " bytes", growth < usedBytes[0] / 2);
+        }
+    }
+
+    private static History newHistory(String taskName, Calendar day, int hour) {
+        History history = new History();
+        history.setTaskName(taskName);
+        history.setHourDone(hour);
+        history.setMinuteDone(0);
+        history.setDoneAt(day.getTimeInMillis() + hour * 60 * 60 * 1000L);
+        return history;
+    }
+
+    /** @return the mean time of reading the histories of the 30 days before now, in micros */
+    private long timeLast30Days(TaskBox taskBox, long now) {
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERY_CALLS; i++)
+            assertFalse(taskBox.getHistory(getContext(), now - 30 * DAY, now).isEmpty());
+        return (System.nanoTime() - start) / 1000 / QUERY_CALLS;
+    }
+
+    /** @return the bytes of the pages in use, the file keeps the pages compaction freed */
+    private long usedBytes() {
+        SQLiteDatabase db = helper.getReadableDatabase();
+        long pages = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null)
+                - DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        return pages * db.getPageSize();
+    }
+
+    private long countDone() {
+        SQLiteDatabase db = helper.getReadableDatabase();
+        return DatabaseUtils.queryNumEntries(db, "histories")
+                + DatabaseUtils.longForQuery(db, "SELECT SUM(done_count) FROM history_daily", null);
+    }
+}
@@ -0,0 +1,94 @@
+package dailyreminderapp.Model;
+
+import android.database.DatabaseUtils;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Imports ten thousand alarms of five hundred tasks and checks that every one is stored, with
+ * one task per name, within a few seconds. The time of each format is logged; read it with
+ * adb logcat -s ImporterTest.
+ */
+public class ImporterTest extends AndroidTestCase {
+
+    private static final String TAG = "ImporterTest";
+    private static final String DATABASE_NAME = "importer_test";
+
+    private static final int ALARMS = 10000;
+    private static final int TASKS = 500;
+    // Parsing and storing the whole file
+    private static final long BUDGET_MILLIS = 5000;
+
+    private DbHelper helper;
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getContext().deleteDatabase(DATABASE_NAME);
+        helper = new DbHelper(getContext(), DATABASE_NAME);
+        file = new File(getContext().getCacheDir(), "importer_test.in");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        helper.close();
+        getContext().deleteDatabase(DATABASE_NAME);
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testCsvImportOfTenThousandAlarms() throws Exception {
+        writeAlarms(Exporter.Format.CSV);
+        importAndCheck(Exporter.Format.CSV);
+    }
+
+    public void testJsonImportOfTenThousandAlarms() throws Exception {
+        writeAlarms(Exporter.Format.JSON);
+        importAndCheck(Exporter.Format.JSON);
+    }
+
+    private void importAndCheck(Exporter.Format format) throws IOException {
+        Importer importer = new Importer(helper);
+        long start = System.currentTimeMillis();
+        List<Alarm> imported = importer.importAlarms(file, format);
+        long took = System.currentTimeMillis() - start;
+
+        Log.i(TAG, format + ": " + ALARMS + " alarms imported in " + took + " ms");
+        assertTrue("Took " + took + " ms", took < BUDGET_MILLIS);
+
+        assertEquals(0, importer.getSkippedRows());
+        assertEquals(ALARMS, imported.size());
+        assertEquals(ALARMS, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), "alarms"));
+        assertEquals(TASKS, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), "task"));
+    }
+
+    /** Writes the alarms in the format Exporter.exportAlarms does, names need quoting in CSV */
+    private void writeAlarms(Exporter.Format format) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            if (format == Exporter.Format.CSV)
+                out.write("id,task_id,taskName,hour,minute,days_mask\n");
+            for (int i = 0; i < ALARMS; i++) {
+                String taskName = "Task " + (i % TASKS) + ", daily";
+                int hour = i / 60 % 24;
+                int minute = i % 60;
+                int daysMask = 1 + i % 0x7f;
+                if (format == Exporter.Format.CSV)
+                    out.write(",,\"" + taskName + "\"," + hour + "," + minute + "," + daysMask + "\n");
+                else
+                    out.write("{\"taskName\":\"" + taskName + "\",\"hour\":" + hour
+                            + ",\"minute\":" + minute + ",\"days_mask\":" + daysMask + "}\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
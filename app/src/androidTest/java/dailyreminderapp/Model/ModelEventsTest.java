@@ -0,0 +1,134 @@
+package dailyreminderapp.Model;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that changes made through the taskBox reach ModelEvents listeners on the main
+ * thread, in the order they were made, and before the callback of the call that made them.
+ */
+public class ModelEventsTest extends AndroidTestCase {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final List<String> events = new ArrayList<>();
+
+    private final ModelEvents.Listener listener = new ModelEvents.Listener() {
+        @Override
+        public void onTaskAdded(Task task) {
+            events.add("task added " + task.getTaskName());
+        }
+
+        @Override
+        public void onTaskRemoved(String taskName) {
+            events.add("task removed " + taskName);
+        }
+
+        @Override
+        public void onAlarmAdded(Alarm alarm) {
+            events.add("alarm added " + alarm.getHour());
+        }
+
+        @Override
+        public void onAlarmRemoved(Alarm alarm) {
+            events.add("alarm removed " + alarm.getHour());
+        }
+
+        @Override
+        public void onHistoryAdded(History history) {
+            events.add("history added " + history.getTaskName());
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TaskBox.setStore(new InMemoryTaskStore());
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                ModelEvents.getInstance().register(listener);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                ModelEvents.getInstance().unregister(listener);
+            }
+        });
+        TaskBox.setStore(null);
+        super.tearDown();
+    }
+
+    public void testChangesArriveInOrderBeforeTheCallback() throws Exception {
+        final AsyncTaskBox taskBox = new AsyncTaskBox();
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<String> eventsAtCallback = new ArrayList<>();
+
+        final Alarm morning = newAlarm(8);
+        taskBox.saveAlarm(getContext(), morning, null);
+        taskBox.saveAlarm(getContext(), newAlarm(9), null);
+        History history = new History();
+        history.setTaskName("Vitamins");
+        taskBox.addToHistory(getContext(), history, null);
+
+        taskBox.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                TaskBox box = new TaskBox();
+                box.deleteAlarmAndEmptyTask(getContext(), morning);
+                box.deleteTask(getContext(), "Vitamins");
+                return null;
+            }
+        }, new AsyncTaskBox.Callback<Void>() {
+            @Override
+            public void onResult(Void result) {
+                eventsAtCallback.addAll(events);
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(
+                "task added Vitamins",
+                "alarm added 8",
+                "alarm added 9",
+                "history added Vitamins",
+                "alarm removed 8",
+                "alarm removed 9",
+                "task removed Vitamins"), eventsAtCallback);
+    }
+
+    /** Runs on the main thread, listeners are only registered there, and waits for it */
+    private static void onMainThread(final Runnable runnable) throws InterruptedException {
+        final CountDownLatch ran = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                runnable.run();
+                ran.countDown();
+            }
+        });
+        assertTrue(ran.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private static Alarm newAlarm(int hour) {
+        Alarm alarm = new Alarm();
+        alarm.setTaskName("Vitamins");
+        alarm.setHour(hour);
+        alarm.setDaysMask(0x7f);
+        return alarm;
+    }
+}
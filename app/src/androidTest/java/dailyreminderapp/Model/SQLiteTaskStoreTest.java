@@ -0,0 +1,22 @@
+package dailyreminderapp.Model;
+
+/**
+ * Runs the TaskStore conformance tests against DbHelper, on a device. Each test gets its own
+ * in-memory database, which SQLiteOpenHelper opens without a context.
+ */
+public class SQLiteTaskStoreTest extends TaskStoreConformanceTest {
+
+    private DbHelper helper;
+
+    @Override
+    protected TaskStore newStore() {
+        helper = new DbHelper(null, null);
+        return helper;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        helper.close();
+        super.tearDown();
+    }
+}
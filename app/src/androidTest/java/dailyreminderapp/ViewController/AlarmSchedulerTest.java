@@ -0,0 +1,96 @@
+package dailyreminderapp.ViewController;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import dailyreminderapp.Model.Alarm;
+import dailyreminderapp.Model.DbHelper;
+import dailyreminderapp.Model.InMemoryTaskStore;
+import dailyreminderapp.Model.TaskBox;
+
+/**
+ * Checks that AlarmScheduler works out the next alarm of a large model in time and only
+ * calls the alarmManager when the alarm it set is not right anymore. The model is a scratch
+ * database, read the way it is after the device restarts. The tests run in the app's process
+ * and set its alarmManager alarm, so it is set again for the user's alarms afterwards.
+ */
+public class AlarmSchedulerTest extends AndroidTestCase {
+
+    private static final String TAG = "AlarmSchedulerTest";
+    private static final String DATABASE_NAME = "scheduler_test";
+
+    private static final int ALARMS = 10000;
+    private static final int ALARMS_PER_TASK = 10;
+    // Reading the model, indexing it and setting the alarm, as after the device restarts
+    private static final long BUDGET_MILLIS = 1000;
+
+    private DbHelper helper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getContext().deleteDatabase(DATABASE_NAME);
+        helper = new DbHelper(getContext(), DATABASE_NAME);
+
+        Random random = new Random(1);
+        List<Alarm> alarms = new ArrayList<>();
+        for (int i = 0; i < ALARMS; i++) {
+            Alarm alarm = new Alarm();
+            alarm.setTaskName("Task " + i / ALARMS_PER_TASK);
+            alarm.setHour(random.nextInt(24));
+            alarm.setMinute(random.nextInt(60));
+            alarm.setDaysMask(1 + random.nextInt(0x7f));
+            alarms.add(alarm);
+        }
+        helper.createAlarms(alarms, new HashMap<String, Long>());
+        /** Empties the model cache, so the first schedule reads the database */
+        TaskBox.setStore(helper);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        /** Sets the alarmManager alarm and its registered time back to the user's next alarm */
+        TaskBox.setStore(null);
+        AlarmScheduler.schedule(getContext(), System.currentTimeMillis());
+
+        helper.close();
+        getContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testReconcilesTenThousandAlarmsInTime() {
+        long start = System.currentTimeMillis();
+        AlarmScheduler.schedule(getContext(), start);
+        long took = System.currentTimeMillis() - start;
+
+        Log.i(TAG, ALARMS + " alarms read from the database and scheduled in " + took + " ms");
+        assertTrue("Took " + took + " ms", took < BUDGET_MILLIS);
+    }
+
+    public void testOnlyChangesAreSet() {
+        long now = System.currentTimeMillis();
+        AlarmScheduler.schedule(getContext(), now);
+
+        assertFalse(AlarmScheduler.schedule(getContext(), now));
+
+        /** A clock change past the next alarm makes another alarm the next */
+        long next = new TaskBox().getNextFire(getContext(), now).getTime();
+        assertTrue(AlarmScheduler.schedule(getContext(), next));
+        assertFalse(AlarmScheduler.schedule(getContext(), next));
+    }
+
+    public void testNoAlarmCancels() {
+        long now = System.currentTimeMillis();
+        AlarmScheduler.schedule(getContext(), now);
+
+        TaskBox.setStore(new InMemoryTaskStore());
+
+        assertTrue(AlarmScheduler.schedule(getContext(), now));
+        assertFalse(AlarmScheduler.schedule(getContext(), now));
+    }
+}
@@ -0,0 +1,126 @@
+package dailyreminderapp.ViewController;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows the same tasks through both alert paths, AlertActivity and the notifications of
+ * NotificationAlerts, as AlarmReceiver does once it has read the model, and collects the time
+ * from waking to the main thread going idle that AlertTiming measures for each. The two are
+ * reported side by side; read them with adb logcat -s AlertTimingTest. They are not compared
+ * in an assertion, as a single device run is too noisy for that.
+ */
+public class AlertTimingTest extends InstrumentationTestCase {
+
+    private static final String TAG = "AlertTimingTest";
+
+    private static final List<String> TASK_NAMES = Arrays.asList("Timing 1", "Timing 2", "Timing 3");
+    private static final int ROUNDS = 3;
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private Context context;
+    private boolean notificationsWereEnabled;
+
+    private final Map<String, List<Long>> idleMillis = new HashMap<>();
+    private final List<Integer> taskCounts = new ArrayList<>();
+    private volatile CountDownLatch idle;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        context = getInstrumentation().getTargetContext();
+        /** The user's choice of path is put back afterwards */
+        notificationsWereEnabled = NotificationAlerts.isEnabled(context);
+
+        idleMillis.put(AlertTiming.PATH_ACTIVITY, new ArrayList<Long>());
+        idleMillis.put(AlertTiming.PATH_NOTIFICATION, new ArrayList<Long>());
+        AlertTiming.setListener(new AlertTiming.Listener() {
+            @Override
+            public void onIdle(String path, int taskCount, long millis) {
+                /** Told on the main thread, checked by the test */
+                taskCounts.add(taskCount);
+                idleMillis.get(path).add(millis);
+                idle.countDown();
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        AlertTiming.setListener(null);
+        NotificationAlerts.setEnabled(context, notificationsWereEnabled);
+        for (String taskName : TASK_NAMES)
+            NotificationAlerts.cancel(context, taskName);
+        super.tearDown();
+    }
+
+    public void testWakeToIdleOfBothPaths() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            showThroughActivity();
+            showThroughNotifications();
+        }
+
+        List<Long> activity = idleMillis.get(AlertTiming.PATH_ACTIVITY);
+        List<Long> notification = idleMillis.get(AlertTiming.PATH_NOTIFICATION);
+        Log.i(TAG, TASK_NAMES.size() + " tasks, wake to idle: activity " + activity + " ms, mean "
+                + mean(activity) + " ms; notifications " + notification + " ms, mean " + mean(notification) + " ms");
+        assertEquals(ROUNDS, activity.size());
+        assertEquals(ROUNDS, notification.size());
+        for (int taskCount : taskCounts)
+            assertEquals(TASK_NAMES.size(), taskCount);
+    }
+
+    private void showThroughActivity() throws InterruptedException {
+        NotificationAlerts.setEnabled(context, false);
+        Instrumentation.ActivityMonitor monitor = getInstrumentation()
+                .addMonitor(AlertActivity.class.getName(), null, false);
+        try {
+            show();
+            Activity alert = getInstrumentation().waitForMonitorWithTimeout(monitor, TIMEOUT_MILLIS);
+            assertNotNull("AlertActivity was not opened", alert);
+            assertTrue("AlertActivity never went idle", idle.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            alert.finish();
+        } finally {
+            getInstrumentation().removeMonitor(monitor);
+        }
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private void showThroughNotifications() throws InterruptedException {
+        NotificationAlerts.setEnabled(context, true);
+        show();
+        assertTrue("Notifications never went idle", idle.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        for (String taskName : TASK_NAMES)
+            NotificationAlerts.cancel(context, taskName);
+    }
+
+    /** Shows the tasks the way AlarmReceiver does, as if the app was woken just now */
+    private void show() {
+        idle = new CountDownLatch(1);
+        final long wokeAt = AlertTiming.now();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                AlarmReceiver.showAlerts(context, TASK_NAMES, wokeAt);
+            }
+        });
+    }
+
+    private static long mean(List<Long> millis) {
+        long sum = 0;
+        for (long m : millis)
+            sum += m;
+        return sum / millis.size();
+    }
+}
@@ -1,16 +1,15 @@
 package dailyreminderapp.Model;
 
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Calendar;
 
 /**
  * Created by Pasa Ibrahim, M Bayu Devara, Solihin.
  *
  * This class represents each alarm object the user creates for a task. These alarm objects are
  * separate from the alarmManager alarms (which represent only one day a week) utilized by the app.
- * The alarm objects represents one alarm time for one task on all of its selected days. To connect
- * with the alarmManager alarms, each alarm contains a list of these alarms' ids
+ * The alarm objects represents one alarm time for one task on all of its selected days, stored as
+ * a single row. Only the next alarm to go off of all of them is set as an alarmManager alarm
+ * (see getNextFireTime and AlarmScheduler).
  */
 
 public class Alarm implements Comparable<Alarm>{
@@ -18,20 +17,68 @@ public class Alarm implements Comparable<Alarm>{
     private int hour;
     private int minute;
     private String taskName; //===========================
-    private List<Long> ids = new LinkedList<Long>();
     private boolean dayOfWeek[] = new boolean[7];
 
     public long getId() { return id; }
 
     public void setId(long id) { this.id = id; }
 
-    public List<Long> getIds() { return Collections.unmodifiableList(ids); }
-
     public boolean[] getDayOfWeek() { return dayOfWeek; }
 
     public void setDayOfWeek(boolean[] dayOfWeek) { this.dayOfWeek = dayOfWeek; }
 
-    public void addId(long id) { ids.add(id); }
+    /**
+     * The days of the week as bits, Sunday (dayOfWeek[0]) is the lowest bit.
+     * This is how the days are stored in the database.
+     */
+    public int getDaysMask() {
+        int mask = 0;
+        for (int i = 0; i < 7; i++) {
+            if (dayOfWeek[i])
+                mask |= 1 << i;
+        }
+        return mask;
+    }
+
+    public void setDaysMask(int mask) {
+        for (int i = 0; i < 7; i++)
+            dayOfWeek[i] = (mask & (1 << i)) != 0;
+    }
+
+    /**
+     * @param day a Calendar day of the week, Sunday is 1
+     * @return the bit of that day in getDaysMask()
+     */
+    public static int dayBit(int day) { return 1 << (day - 1); }
+
+    /**
+     * The request code of the alarmManager alarm older versions of the app set for one day of
+     * this alarm, needed to cancel it.
+     * @param day a Calendar day of the week, Sunday is 1
+     */
+    public int getRequestCode(int day) { return (int) (id * 8 + day); }
+
+    /**
+     * @param after epoch millis
+     * @return the first time after it that this alarm goes off, in epoch millis, or -1 if
+     *         no day is checked
+     */
+    public long getNextFireTime(long after) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(after);
+        calendar.set(Calendar.HOUR_OF_DAY, hour);
+        calendar.set(Calendar.MINUTE, minute);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+
+        /** Today and the next 7 days, the last one for an alarm of only today that has passed */
+        for (int i = 0; i < 8; i++) {
+            if (dayOfWeek[calendar.get(Calendar.DAY_OF_WEEK) - 1] && calendar.getTimeInMillis() > after)
+                return calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        return -1;
+    }
 
     public int getHour() { return hour; }
 
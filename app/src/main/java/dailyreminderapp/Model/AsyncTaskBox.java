@@ -0,0 +1,256 @@
+package dailyreminderapp.Model;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The taskBox for screens: every call runs on a background thread and its result is handed
+ * to a callback on the main thread, so no database read or write blocks the UI.
+ *
+ * All calls share one worker thread, so they run in the order they were made: a screen
+ * that reads after another one wrote sees the write. The thread stops when it has been idle
+ * for a while. A call throwing an exception throws it again on the main thread, as it would
+ * have done when the call ran there.
+ *
+ * Every call returns its Future. Screens cancel the calls they are waiting for when their
+ * views go away; the callback of a cancelled call is not run.
+ *
+ * At most QUEUE_CAPACITY calls wait for the worker. When the queue is full, calls that were
+ * cancelled while queued are taken out to make room. If it is still full, the worker is
+ * stuck, and submit() throws a RejectedExecutionException. A call is never run on the
+ * caller's thread, which is the main thread, and a call queued earlier is never dropped, as
+ * it may be a write.
+ */
+public class AsyncTaskBox {
+
+    /** Receives the result of a call, on the main thread */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private static final int KEEP_ALIVE_SECONDS = 30;
+    static final int QUEUE_CAPACITY = 256; // Calls waiting for the worker
+
+    /** Makes room by taking out the cancelled calls, or fails the call, see the class comment */
+    private static final RejectedExecutionHandler rejection = new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+            e.purge();
+            if (e.isShutdown() || !e.getQueue().offer(r))
+                throw new RejectedExecutionException(QUEUE_CAPACITY + " calls already waiting for the worker");
+        }
+    };
+
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "AsyncTaskBox");
+                }
+            }, rejection);
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final TaskBox taskBox = new TaskBox();
+
+    /**
+     * Runs work on the worker thread and hands its result to the callback
+     * @param callback run on the main thread, or null if the result is not needed
+     */
+    public <T> Future<T> submit(Callable<T> work, final Callback<T> callback) {
+        FutureTask<T> task = new FutureTask<T>(work) {
+            @Override
+            protected void done() {
+                if (!isCancelled())
+                    mainHandler.post(new Deliver<>(this, callback));
+            }
+        };
+        executor.execute(task);
+        return task;
+    }
+
+    /** Hands the result of a finished call to its callback, unless it was cancelled since */
+    private static class Deliver<T> implements Runnable {
+        private final Future<T> future;
+        private final Callback<T> callback;
+
+        Deliver(Future<T> future, Callback<T> callback) {
+            this.future = future;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            T result;
+            try {
+                result = future.get();
+            } catch (CancellationException e) {
+                return;
+            } catch (InterruptedException e) {
+                return;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new RuntimeException(e.getCause());
+            }
+            if (callback != null)
+                callback.onResult(result);
+        }
+    }
+
+    // ############################## alarms ###################################### //
+
+    /** @see TaskBox#getAlarms(Context, int) */
+    public Future<List<Alarm>> getAlarms(final Context c, final int dayOfWeek,
+                                         Callback<List<Alarm>> callback) {
+        return submit(new Callable<List<Alarm>>() {
+            @Override
+            public List<Alarm> call() {
+                return taskBox.getAlarms(c, dayOfWeek);
+            }
+        }, callback);
+    }
+
+    /** The alarms of every day of the week, index 0 is Sunday, see getAlarms() */
+    public Future<List<List<Alarm>>> getAlarmsOfWeek(final Context c,
+                                                     Callback<List<List<Alarm>>> callback) {
+        return submit(new Callable<List<List<Alarm>>>() {
+            @Override
+            public List<List<Alarm>> call() {
+                List<List<Alarm>> week = new ArrayList<>();
+                for (int day = 1; day < 8; day++)
+                    week.add(taskBox.getAlarms(c, day));
+                return week;
+            }
+        }, callback);
+    }
+
+    /** @see TaskBox#getAlarmById(Context, long) */
+    public Future<Alarm> getAlarmById(final Context c, final long alarmId, Callback<Alarm> callback) {
+        return submit(new Callable<Alarm>() {
+            @Override
+            public Alarm call() {
+                return taskBox.getAlarmById(c, alarmId);
+            }
+        }, callback);
+    }
+
+    /** Every task with its alarms sorted by time of day, the tasks sorted by name */
+    public Future<Map<String, List<Alarm>>> getAlarmsByTask(final Context c,
+                                                           Callback<Map<String, List<Alarm>>> callback) {
+        return submit(new Callable<Map<String, List<Alarm>>>() {
+            @Override
+            public Map<String, List<Alarm>> call() {
+                List<Task> tasks = taskBox.getTasks(c);
+                Collections.sort(tasks, new TaskComparator());
+
+                Map<String, List<Alarm>> alarmsByTask = new LinkedHashMap<>();
+                for (Task task : tasks)
+                    alarmsByTask.put(task.getTaskName(), taskBox.getAlarmByTask(c, task.getTaskName()));
+                return alarmsByTask;
+            }
+        }, callback);
+    }
+
+    /** @see TaskBox#saveAlarm(Context, Alarm) */
+    public Future<Alarm> saveAlarm(final Context c, final Alarm alarm, Callback<Alarm> callback) {
+        return submit(new Callable<Alarm>() {
+            @Override
+            public Alarm call() {
+                taskBox.saveAlarm(c, alarm);
+                return alarm;
+            }
+        }, callback);
+    }
+
+    /**
+     * Saves an alarm in place of another one, see saveAlarm() and deleteAlarmAndEmptyTask()
+     * @return the saved alarm, with its id set
+     */
+    public Future<Alarm> replaceAlarm(final Context c, final Alarm replaced, final Alarm alarm,
+                                      Callback<Alarm> callback) {
+        return submit(new Callable<Alarm>() {
+            @Override
+            public Alarm call() {
+                taskBox.saveAlarm(c, alarm);
+                taskBox.deleteAlarmAndEmptyTask(c, replaced);
+                return alarm;
+            }
+        }, callback);
+    }
+
+    /** @see TaskBox#deleteAlarmAndEmptyTask(Context, Alarm) */
+    public Future<Void> deleteAlarmAndEmptyTask(final Context c, final Alarm alarm, Callback<Void> callback) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                taskBox.deleteAlarmAndEmptyTask(c, alarm);
+                return null;
+            }
+        }, callback);
+    }
+
+    // ############################## histories ################################### //
+
+    /** @see TaskBox#addToHistory(Context, History) */
+    public Future<Void> addToHistory(final Context c, final History history, Callback<Void> callback) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                taskBox.addToHistory(c, history);
+                return null;
+            }
+        }, callback);
+    }
+
+    /** @see TaskBox#addToHistory(Context, List) */
+    public Future<Void> addToHistory(final Context c, final List<History> histories, Callback<Void> callback) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                taskBox.addToHistory(c, histories);
+                return null;
+            }
+        }, callback);
+    }
+
+    /** @see TaskBox#getHistoryPage(Context, long, int) */
+    public Future<List<History>> getHistoryPage(final Context c, final long beforeId, final int limit,
+                                                Callback<List<History>> callback) {
+        return submit(new Callable<List<History>>() {
+            @Override
+            public List<History> call() {
+                return taskBox.getHistoryPage(c, beforeId, limit);
+            }
+        }, callback);
+    }
+}
@@ -4,12 +4,19 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
-import java.net.URISyntaxException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * SQL database helper class, adapted from DrBFraser code on YouTube.
@@ -20,21 +27,29 @@ import java.util.List;
  * It can be accessed only through the taskBox model class.
  * It can access the task, alarm, and history model classes.
  *
+ * Only one instance is ever created (see getInstance), so the database file is opened once
+ * and kept open for the lifetime of the app process instead of once per taskBox call.
+ * It is the SQLite TaskStore of the app.
+ * Write-ahead logging is turned on so screens can read while an alarm is being saved.
+ * Foreign keys are enforced (see onConfigure), so deleting a task takes its alarms and
+ * snoozes with it.
  */
 
-public class DbHelper extends SQLiteOpenHelper {
+public class DbHelper extends SQLiteOpenHelper implements TaskStore {
 
     /** Database name */
     private static final String DATABASE_NAME = "task_model_database"; //===========================
 
     /** Database version */
-    private static final int DATABASE_VERSION = 3; //===========================
+    private static final int DATABASE_VERSION = 10; //===========================
 
     /** Table names */
     private static final String TASK_TABLE          = "task"; //===========================
     private static final String ALARM_TABLE         = "alarms";
-    private static final String TASK_ALARM_LINKS    = "task_alarm"; //===========================
     private static final String HISTORIES_TABLE     = "histories";
+    private static final String LEGACY_REQUESTS     = "legacy_requests";
+    private static final String HISTORY_DAILY_TABLE = "history_daily";
+    private static final String SNOOZES_TABLE       = "snoozes";
 
     /** Common column name and location */
     public static final String KEY_ROWID            = "id";
@@ -43,18 +58,27 @@ public class DbHelper extends SQLiteOpenHelper {
     private static final String KEY_TASKNAME        = "taskName"; //===========================
 
     /** Alarm table columns, Hour & Minute used by History Table */
-    private static final String KEY_INTENT           = "intent";
     private static final String KEY_HOUR             = "hour";
     private static final String KEY_MINUTE           = "minute";
-    private static final String KEY_DAY_WEEK         = "day_of_week";
+    private static final String KEY_DAYS_MASK        = "days_mask";
     private static final String KEY_ALARMS_TASK_NAME = "taskName"; //===========================
-
-    /** Task-Alarm link table columns */
-    private static final String KEY_TASKTABLE_ID    = "task_id"; //===========================
-    private static final String KEY_ALARMTABLE_ID   = "alarm_id";
+    private static final String KEY_TASKTABLE_ID     = "task_id"; //===========================
 
     /** History Table columns, some used above */
     private static final String KEY_DATE_STRING     = "date";
+    private static final String KEY_DONE_AT         = "done_at";
+
+    /** History daily table columns, taskName and task_id used as well */
+    private static final String KEY_DAY             = "day";
+    private static final String KEY_DONE_COUNT      = "done_count";
+    private static final String KEY_FIRST_DONE_AT   = "first_done_at";
+    private static final String KEY_LAST_DONE_AT    = "last_done_at";
+
+    /** Legacy request table columns */
+    private static final String KEY_REQUEST_CODE    = "request_code";
+
+    /** Snoozes table columns, taskName and task_id used as well */
+    private static final String KEY_FIRE_AT         = "fire_at";
 
     /** Task Table: create statement */
     private static final String CREATE_TASK_TABLE = //===========================
@@ -62,35 +86,502 @@ public class DbHelper extends SQLiteOpenHelper {
                     + KEY_ROWID + " integer primary key not null,"
                     + KEY_TASKNAME + " text not null" + ")"; //===========================
 
-    /** Alarm Table: create statement */
+    /**
+     * Alarm Table: create statement
+     * One row per alarm, the days it goes off are the bits of days_mask (see Alarm.getDaysMask)
+     * The alarms of a task are deleted together with it.
+     */
     private static final String CREATE_ALARM_TABLE =
             "create table "         + ALARM_TABLE + "("
                     + KEY_ROWID     + " integer primary key,"
-                    + KEY_INTENT    + " text,"
                     + KEY_HOUR      + " integer,"
                     + KEY_MINUTE    + " integer,"
                     + KEY_ALARMS_TASK_NAME  + " text not null," //===========================
-                    + KEY_DAY_WEEK  + " integer" + ")";
-
-    /** Task-Alarm link table: create statement */
-    private static final String CREATE_ACTIVITY_ALARM_LINKS_TABLE = //===========================
-            "create table "             + TASK_ALARM_LINKS + "(" //===========================
-                    + KEY_ROWID         + " integer primary key not null,"
-                    + KEY_TASKTABLE_ID  + " integer not null," //===========================
-                    + KEY_ALARMTABLE_ID + " integer not null" + ")";
+                    + KEY_DAYS_MASK + " integer not null,"
+                    + KEY_TASKTABLE_ID      + " integer not null references "
+                    + TASK_TABLE    + "(" + KEY_ROWID + ") on delete cascade" + ")"; //===========================
 
-    /** Histories Table: create statement */
+    /**
+     * Histories Table: create statement
+     * The task name is copied into every row, so the history of a deleted task stays
+     * readable and only its task_id is cleared. done_at is the time in epoch millis and is
+     * what histories are sorted and filtered by, date, hour and minute are kept for display.
+     */
     private static final String CREATE_HISTORIES_TABLE =
             "CREATE TABLE "             + HISTORIES_TABLE + "("
                     + KEY_ROWID         + " integer primary key, "
                     + KEY_TASKNAME      + " text not null, " //===========================
                     + KEY_DATE_STRING   + " text, "
                     + KEY_HOUR          + " integer, "
-                    + KEY_MINUTE        + " integer " + ")";
+                    + KEY_MINUTE        + " integer, "
+                    + KEY_DONE_AT       + " integer not null, "
+                    + KEY_TASKTABLE_ID  + " integer references "
+                    + TASK_TABLE        + "(" + KEY_ROWID + ") on delete set null" + ")";
+
+    /**
+     * History daily table: create statement
+     * Histories older than the compaction horizon, rolled up into one row per task and
+     * local day (yyyy-MM-dd) holding how often and when first and last it was done
+     */
+    private static final String CREATE_HISTORY_DAILY_TABLE =
+            "create table "             + HISTORY_DAILY_TABLE + "("
+                    + KEY_TASKNAME      + " text not null, "
+                    + KEY_DAY           + " text not null, "
+                    + KEY_TASKTABLE_ID  + " integer references "
+                    + TASK_TABLE        + "(" + KEY_ROWID + ") on delete set null, "
+                    + KEY_DONE_COUNT    + " integer not null, "
+                    + KEY_FIRST_DONE_AT + " integer not null, "
+                    + KEY_LAST_DONE_AT  + " integer not null, "
+                    + "primary key(" + KEY_TASKNAME + ", " + KEY_DAY + ")" + ")";
+
+    /**
+     * Legacy request table: create statement
+     * Request codes of OS alarms registered before alarms were stored as one row,
+     * kept until the view controller has cancelled them
+     */
+    private static final String CREATE_LEGACY_REQUESTS_TABLE =
+            "create table "             + LEGACY_REQUESTS + "("
+                    + KEY_REQUEST_CODE  + " integer primary key" + ")";
+
+    /**
+     * Snoozes table: create statement
+     * One row per task and time it was snoozed to, which merges snoozing a task to the
+     * same minute twice. The snoozes of a task are deleted together with it.
+     */
+    private static final String CREATE_SNOOZES_TABLE =
+            "create table "             + SNOOZES_TABLE + "("
+                    + KEY_TASKNAME      + " text not null, "
+                    + KEY_FIRE_AT       + " integer not null, "
+                    + KEY_TASKTABLE_ID  + " integer not null references "
+                    + TASK_TABLE        + "(" + KEY_ROWID + ") on delete cascade, "
+                    + "primary key(" + KEY_TASKNAME + ", " + KEY_FIRE_AT + ")" + ")";
+
+    /**
+     * Indexes: one for every column a query or delete looks rows up by, including the
+     * foreign keys, which SQLite looks up in every child table when a task is deleted.
+     * Task names are unique, a task is found by its name everywhere.
+     */
+    private static final String[] CREATE_INDEXES = {
+            "CREATE UNIQUE INDEX IF NOT EXISTS task_name_index ON "
+                    + TASK_TABLE        + "(" + KEY_TASKNAME + ")",
+            "CREATE INDEX IF NOT EXISTS alarms_task_index ON "
+                    + ALARM_TABLE       + "(" + KEY_TASKTABLE_ID + ")",
+            "CREATE INDEX IF NOT EXISTS histories_task_done_at_index ON "
+                    + HISTORIES_TABLE   + "(" + KEY_TASKTABLE_ID + ", " + KEY_DONE_AT + ")",
+            "CREATE INDEX IF NOT EXISTS histories_done_at_index ON "
+                    + HISTORIES_TABLE   + "(" + KEY_DONE_AT + ")",
+            "CREATE INDEX IF NOT EXISTS history_daily_task_index ON "
+                    + HISTORY_DAILY_TABLE + "(" + KEY_TASKTABLE_ID + ")",
+            "CREATE INDEX IF NOT EXISTS snoozes_fire_at_index ON "
+                    + SNOOZES_TABLE     + "(" + KEY_FIRE_AT + ")",
+            "CREATE INDEX IF NOT EXISTS snoozes_task_index ON "
+                    + SNOOZES_TABLE     + "(" + KEY_TASKTABLE_ID + ")"
+    };
+
+    /** Task Table: every task */
+    static final String SELECT_ALL_TASKS =
+            "SELECT * FROM "    + TASK_TABLE;
+
+    /** Task Table: id of a task by its name */
+    static final String SELECT_TASK_ID_BY_NAME =
+            "SELECT "   + KEY_ROWID     + " FROM "  + TASK_TABLE
+                    + " WHERE "         + KEY_TASKNAME + " = ?";
+
+    /** Alarm Table: every alarm */
+    static final String SELECT_ALL_ALARMS =
+            "SELECT * FROM "    + ALARM_TABLE;
+
+    /** Alarm Table: every alarm of a task */
+    static final String SELECT_ALARMS_BY_TASK =
+            "SELECT alarm.* FROM "
+                    + ALARM_TABLE       + " alarm, "
+                    + TASK_TABLE        + " task WHERE "
+                    + "task."           + KEY_TASKNAME      + " = ?"
+                    + " AND alarm."     + KEY_TASKTABLE_ID  + " = "
+                    + "task."           + KEY_ROWID;
+
+    /**
+     * Alarm Table: every alarm going off on one day of the week, the argument is the bit
+     * of that day. This reads the whole (small, one row per alarm) table by design.
+     */
+    static final String SELECT_ALARMS_BY_DAY =
+            "SELECT * FROM "    + ALARM_TABLE
+                    + " WHERE " + KEY_DAYS_MASK + " & ? != 0";
+
+    /** Alarm Table: a single row */
+    static final String SELECT_ALARM_BY_ID =
+            "SELECT * FROM "    + ALARM_TABLE
+                    + " WHERE " + KEY_ROWID + " = ?";
+
+    /** Histories Table: every history */
+    static final String SELECT_ALL_HISTORY =
+            "SELECT * FROM "    + HISTORIES_TABLE;
+
+    /** Histories Table: up to ? histories with an id below ?, newest first */
+    static final String SELECT_HISTORY_PAGE =
+            "SELECT * FROM "    + HISTORIES_TABLE
+                    + " WHERE " + KEY_ROWID + " < ?"
+                    + " ORDER BY " + KEY_ROWID + " DESC LIMIT ?";
+
+    /** Histories Table: histories done in [?, ?), oldest first */
+    static final String SELECT_HISTORY_BETWEEN =
+            "SELECT * FROM "    + HISTORIES_TABLE
+                    + " WHERE " + KEY_DONE_AT + " >= ? AND " + KEY_DONE_AT + " < ?"
+                    + " ORDER BY " + KEY_DONE_AT;
+
+    /** Histories Table: histories of a task, by the task's name, done in [?, ?), oldest first */
+    static final String SELECT_HISTORY_BY_TASK_BETWEEN =
+            "SELECT history.* FROM "
+                    + HISTORIES_TABLE   + " history, "
+                    + TASK_TABLE        + " task WHERE "
+                    + "task."           + KEY_TASKNAME      + " = ?"
+                    + " AND history."   + KEY_TASKTABLE_ID  + " = "
+                    + "task."           + KEY_ROWID
+                    + " AND history."   + KEY_DONE_AT       + " >= ?"
+                    + " AND history."   + KEY_DONE_AT       + " < ?"
+                    + " ORDER BY history." + KEY_DONE_AT;
+
+    /** Histories Table: the oldest histories done before ?, at most ?, as a subquery for compaction */
+    private static final String OLDEST_HISTORIES =
+            "SELECT * FROM "    + HISTORIES_TABLE
+                    + " WHERE " + KEY_DONE_AT + " < ?"
+                    + " ORDER BY " + KEY_DONE_AT + " LIMIT ?";
+
+    /** Histories Table: the histories of OLDEST_HISTORIES, summed up per task and local day */
+    static final String SELECT_OLDEST_HISTORIES_BY_DAY =
+            "SELECT "   + KEY_TASKNAME
+                    + ", MAX(" + KEY_TASKTABLE_ID + ")"
+                    + ", date(" + KEY_DONE_AT + " / 1000, 'unixepoch', 'localtime') AS " + KEY_DAY
+                    + ", COUNT(*), MIN(" + KEY_DONE_AT + "), MAX(" + KEY_DONE_AT + ")"
+                    + " FROM (" + OLDEST_HISTORIES + ")"
+                    + " GROUP BY " + KEY_TASKNAME + ", " + KEY_DAY;
+
+    /** Histories Table: the histories of OLDEST_HISTORIES */
+    static final String DELETE_OLDEST_HISTORIES =
+            "DELETE FROM "      + HISTORIES_TABLE
+                    + " WHERE " + KEY_ROWID + " IN (SELECT " + KEY_ROWID
+                    + " FROM (" + OLDEST_HISTORIES + "))";
+
+    /** History daily table: adds to the row of a task and day, if there is one */
+    static final String UPDATE_HISTORY_DAILY =
+            "UPDATE "   + HISTORY_DAILY_TABLE + " SET "
+                    + KEY_DONE_COUNT    + " = " + KEY_DONE_COUNT + " + ?, "
+                    + KEY_FIRST_DONE_AT + " = MIN(" + KEY_FIRST_DONE_AT + ", ?), "
+                    + KEY_LAST_DONE_AT  + " = MAX(" + KEY_LAST_DONE_AT + ", ?)"
+                    + " WHERE " + KEY_TASKNAME + " = ? AND " + KEY_DAY + " = ?";
+
+    /** History daily table: insert statement */
+    static final String INSERT_HISTORY_DAILY =
+            "INSERT INTO "      + HISTORY_DAILY_TABLE + "("
+                    + KEY_DONE_COUNT    + ", "
+                    + KEY_FIRST_DONE_AT + ", "
+                    + KEY_LAST_DONE_AT  + ", "
+                    + KEY_TASKNAME      + ", "
+                    + KEY_DAY           + ", "
+                    + KEY_TASKTABLE_ID  + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    /** Task Table: insert statement */
+    static final String INSERT_TASK =
+            "INSERT INTO "      + TASK_TABLE + "(" + KEY_TASKNAME + ") VALUES (?)";
+
+    /** Alarm Table: insert statement */
+    static final String INSERT_ALARM =
+            "INSERT INTO "      + ALARM_TABLE + "("
+                    + KEY_HOUR              + ", "
+                    + KEY_MINUTE            + ", "
+                    + KEY_ALARMS_TASK_NAME  + ", "
+                    + KEY_DAYS_MASK         + ", "
+                    + KEY_TASKTABLE_ID      + ") VALUES (?, ?, ?, ?, ?)";
+
+    /** Histories Table: insert statement, the task_id is looked up by the task name ?1 */
+    static final String INSERT_HISTORY =
+            "INSERT INTO "      + HISTORIES_TABLE + "("
+                    + KEY_TASKNAME      + ", "
+                    + KEY_DATE_STRING   + ", "
+                    + KEY_HOUR          + ", "
+                    + KEY_MINUTE        + ", "
+                    + KEY_DONE_AT       + ", "
+                    + KEY_TASKTABLE_ID  + ") VALUES (?1, ?2, ?3, ?4, ?5, (SELECT "
+                    + KEY_ROWID + " FROM " + TASK_TABLE
+                    + " WHERE " + KEY_TASKNAME + " = ?1))";
+
+    /**
+     * Snoozes table: insert statement for task ?1 at time ?2. Nothing is inserted if the
+     * task does not exist or is already snoozed to that time.
+     */
+    static final String INSERT_SNOOZE =
+            "INSERT OR IGNORE INTO " + SNOOZES_TABLE + "("
+                    + KEY_TASKNAME      + ", "
+                    + KEY_FIRE_AT       + ", "
+                    + KEY_TASKTABLE_ID  + ") SELECT ?1, ?2, " + KEY_ROWID
+                    + " FROM " + TASK_TABLE + " WHERE " + KEY_TASKNAME + " = ?1";
+
+    /** Snoozes table: every snooze, soonest first */
+    static final String SELECT_ALL_SNOOZES =
+            "SELECT "   + KEY_TASKNAME + ", " + KEY_FIRE_AT + " FROM " + SNOOZES_TABLE
+                    + " ORDER BY " + KEY_FIRE_AT;
+
+    /** Snoozes table: snoozes going off at or before ?, soonest first */
+    static final String SELECT_SNOOZES_UNTIL =
+            "SELECT "   + KEY_TASKNAME + ", " + KEY_FIRE_AT + " FROM " + SNOOZES_TABLE
+                    + " WHERE " + KEY_FIRE_AT + " <= ?"
+                    + " ORDER BY " + KEY_FIRE_AT;
+
+    /** Snoozes table: snoozes going off at or before ? */
+    static final String DELETE_SNOOZES_UNTIL =
+            "DELETE FROM "      + SNOOZES_TABLE
+                    + " WHERE " + KEY_FIRE_AT + " <= ?";
+
+    /** Legacy request table: every request code */
+    static final String SELECT_LEGACY_REQUEST_CODES =
+            "SELECT "   + KEY_REQUEST_CODE  + " FROM "  + LEGACY_REQUESTS;
+
+    /** Alarm Table: a single row */
+    static final String DELETE_ALARM_BY_ID =
+            "DELETE FROM "      + ALARM_TABLE
+                    + " WHERE " + KEY_ROWID + " = ?";
+
+    /** Task Table: a task by its name, its alarms are deleted by the foreign key */
+    static final String DELETE_TASK_BY_NAME =
+            "DELETE FROM "      + TASK_TABLE
+                    + " WHERE " + KEY_TASKNAME + " = ?";
 
-    /** Constructor */
-    public DbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    /**
+     * Export queries: every row of a table with its columns in a fixed order, as tables
+     * that were migrated have them in another order than newly created ones
+     */
+    static final String EXPORT_TASKS =
+            "SELECT "   + KEY_ROWID + ", " + KEY_TASKNAME
+                    + " FROM " + TASK_TABLE + " ORDER BY " + KEY_ROWID;
+
+    static final String EXPORT_ALARMS =
+            "SELECT "   + KEY_ROWID + ", " + KEY_TASKTABLE_ID + ", " + KEY_ALARMS_TASK_NAME + ", "
+                    + KEY_HOUR + ", " + KEY_MINUTE + ", " + KEY_DAYS_MASK
+                    + " FROM " + ALARM_TABLE + " ORDER BY " + KEY_ROWID;
+
+    static final String EXPORT_HISTORY =
+            "SELECT "   + KEY_ROWID + ", " + KEY_TASKTABLE_ID + ", " + KEY_TASKNAME + ", "
+                    + KEY_DONE_AT + ", " + KEY_DATE_STRING + ", " + KEY_HOUR + ", " + KEY_MINUTE
+                    + " FROM " + HISTORIES_TABLE + " ORDER BY " + KEY_ROWID;
+
+    static final String EXPORT_HISTORY_DAILY =
+            "SELECT "   + KEY_TASKTABLE_ID + ", " + KEY_TASKNAME + ", " + KEY_DAY + ", "
+                    + KEY_DONE_COUNT + ", " + KEY_FIRST_DONE_AT + ", " + KEY_LAST_DONE_AT
+                    + " FROM " + HISTORY_DAILY_TABLE + " ORDER BY " + KEY_TASKNAME + ", " + KEY_DAY;
+
+    /** Oldest database version that can be upgraded without losing its data */
+    private static final int FIRST_MIGRATED_VERSION = 3;
+
+    /** Upgrade steps, MIGRATIONS[i] takes version FIRST_MIGRATED_VERSION + i to the next one */
+    private static final Migration[] MIGRATIONS = {
+            /** 3 to 4: indexes for the lookups */
+            new Migration() {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX IF NOT EXISTS task_name_index ON task(taskName)");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS task_alarm_task_index ON task_alarm(task_id, alarm_id)");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS task_alarm_alarm_index ON task_alarm(alarm_id)");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS alarms_day_index ON alarms(day_of_week)");
+                }
+            },
+            /**
+             * 4 to 5: one row per alarm with a days_mask instead of one row per day plus a
+             * link row. Rows of the same task and time are merged, keeping the lowest id.
+             * The old row ids were the request codes of the OS alarms, so they are kept
+             * in legacy_requests for the view controller to cancel.
+             */
+            new Migration() {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("create table legacy_requests(request_code integer primary key)");
+                    db.execSQL("INSERT INTO legacy_requests(request_code) SELECT id FROM alarms");
+
+                    db.execSQL("create table alarms_new(id integer primary key, hour integer,"
+                            + " minute integer, taskName text not null,"
+                            + " days_mask integer not null, task_id integer not null)");
+                    db.execSQL("INSERT INTO alarms_new(id, hour, minute, taskName, days_mask, task_id)"
+                            + " SELECT MIN(alarm.id), alarm.hour, alarm.minute, alarm.taskName,"
+                            + " SUM(DISTINCT 1 << (alarm.day_of_week - 1)), link.task_id"
+                            + " FROM alarms alarm, task_alarm link, task task"
+                            + " WHERE link.alarm_id = alarm.id AND task.id = link.task_id"
+                            + " GROUP BY link.task_id, alarm.hour, alarm.minute");
+
+                    db.execSQL("DROP TABLE alarms");
+                    db.execSQL("DROP TABLE task_alarm");
+                    db.execSQL("ALTER TABLE alarms_new RENAME TO alarms");
+                    db.execSQL("CREATE INDEX alarms_task_index ON alarms(task_id)");
+                }
+            },
+            /**
+             * 5 to 6: foreign keys from alarms and histories to task. SQLite can only add
+             * the one of alarms by rebuilding the table, alarms of tasks that no longer
+             * exist are dropped first since they would break it. Histories get a new
+             * task_id column, filled by task name.
+             */
+            new Migration() {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("DELETE FROM alarms WHERE task_id NOT IN (SELECT id FROM task)");
+                    rebuildTable(db, "alarms",
+                            "create table alarms(id integer primary key, hour integer,"
+                                    + " minute integer, taskName text not null,"
+                                    + " days_mask integer not null, task_id integer not null"
+                                    + " references task(id) on delete cascade)",
+                            "id, hour, minute, taskName, days_mask, task_id",
+                            "id, hour, minute, taskName, days_mask, task_id");
+                    db.execSQL("CREATE INDEX alarms_task_index ON alarms(task_id)");
+
+                    db.execSQL("ALTER TABLE histories ADD COLUMN task_id integer"
+                            + " references task(id) on delete set null");
+                    db.execSQL("UPDATE histories SET task_id ="
+                            + " (SELECT id FROM task WHERE task.taskName = histories.taskName)");
+                    db.execSQL("CREATE INDEX histories_task_index ON histories(task_id)");
+                }
+            },
+            /**
+             * 6 to 7: done_at in epoch millis, worked out from the date string and the hour
+             * and minute that were stored so far. Rows whose date cannot be read get 0, so they
+             * sort before every other history. The task_id index is replaced by one on
+             * (task_id, done_at), which serves the foreign key as well.
+             */
+            new Migration() {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE histories ADD COLUMN done_at integer not null default 0");
+
+                    SimpleDateFormat format = new SimpleDateFormat("MMM d, yyyy");
+                    Calendar doneAt = Calendar.getInstance();
+                    SQLiteStatement update = db.compileStatement(
+                            "UPDATE histories SET done_at = ? WHERE id = ?");
+                    Cursor c = db.rawQuery("SELECT id, date, hour, minute FROM histories"
+                            + " WHERE date IS NOT NULL", null);
+                    try {
+                        while (c.moveToNext()) {
+                            try {
+                                doneAt.setTime(format.parse(c.getString(1)));
+                            } catch (ParseException e) {
+                                continue;
+                            }
+                            doneAt.set(Calendar.HOUR_OF_DAY, c.getInt(2));
+                            doneAt.set(Calendar.MINUTE, c.getInt(3));
+
+                            update.bindLong(1, doneAt.getTimeInMillis());
+                            update.bindLong(2, c.getLong(0));
+                            update.executeUpdateDelete();
+                        }
+                    } finally {
+                        c.close();
+                        update.close();
+                    }
+
+                    db.execSQL("DROP INDEX histories_task_index");
+                    db.execSQL("CREATE INDEX histories_task_done_at_index ON histories(task_id, done_at)");
+                    db.execSQL("CREATE INDEX histories_done_at_index ON histories(done_at)");
+                }
+            },
+            /** 7 to 8: daily roll-up of old histories */
+            new Migration() {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("create table history_daily(taskName text not null,"
+                            + " day text not null, task_id integer references task(id)"
+                            + " on delete set null, done_count integer not null,"
+                            + " first_done_at integer not null, last_done_at integer not null,"
+                            + " primary key(taskName, day))");
+                    db.execSQL("CREATE INDEX history_daily_task_index ON history_daily(task_id)");
+                }
+            },
+            /**
+             * 8 to 9: unique task names. Tasks sharing a name are merged into the one with
+             * the lowest id, which is what getTaskByName found so far, before the name index
+             * is made unique.
+             */
+            new Migration() {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    String firstWithSameName = "(SELECT MIN(same.id) FROM task same, task task"
+                            + " WHERE task.id = %1$s.task_id AND same.taskName = task.taskName)";
+                    for (String table : new String[]{"alarms", "histories", "history_daily"})
+                        db.execSQL("UPDATE " + table + " SET task_id = "
+                                + String.format(firstWithSameName, table)
+                                + " WHERE task_id IS NOT NULL");
+                    db.execSQL("DELETE FROM task WHERE id NOT IN"
+                            + " (SELECT MIN(id) FROM task GROUP BY taskName)");
+
+                    db.execSQL("DROP INDEX task_name_index");
+                    db.execSQL("CREATE UNIQUE INDEX task_name_index ON task(taskName)");
+                }
+            },
+            /** 9 to 10: snoozes, which were only alarmManager alarms so far and are not moved */
+            new Migration() {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("create table snoozes(taskName text not null,"
+                            + " fire_at integer not null, task_id integer not null"
+                            + " references task(id) on delete cascade,"
+                            + " primary key(taskName, fire_at))");
+                    db.execSQL("CREATE INDEX snoozes_fire_at_index ON snoozes(fire_at)");
+                    db.execSQL("CREATE INDEX snoozes_task_index ON snoozes(task_id)");
+                }
+            }
+    };
+
+    /**
+     * Task ids by task name, filled as tasks are looked up or created and emptied of them as
+     * they are deleted, see getTaskId(). Writes change it only once their transaction is
+     * committed, lookups hold its lock while they read the database so that a lookup racing
+     * a delete cannot put the deleted id back. Its lock must not be taken inside a transaction.
+     */
+    private final Map<String, Long> taskIdCache = new HashMap<>();
+
+    /** Compiled statements of the hot single-row lookups and inserts, see getStatement() */
+    private final Map<String, SQLiteStatement> statements = new HashMap<>();
+
+    /** The single, lazily created helper shared by the whole app */
+    private static DbHelper instance;
+
+    /** Constructor, use getInstance() instead */
+    private DbHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Constructor for a database under another name, used by tests, also of other packages
+     * @param name the file name, or null for a database that only lives in memory
+     */
+    public DbHelper(Context context, String name) {
+        this(context, name, null);
+    }
+
+    /**
+     * Constructor for a database whose cursors are made by a factory, used by tests to see
+     * the queries run
+     * @param factory makes the cursor of every query, or null for the default cursors
+     */
+    DbHelper(Context context, String name, SQLiteDatabase.CursorFactory factory) {
+        super(context, name, factory, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Returns the process-wide helper, creating it on first use. The application context is
+     * held so that no activity is leaked by the long-lived instance.
+     * @param context any context of the app
+     * @return the shared DbHelper
+     */
+    public static synchronized DbHelper getInstance(Context context) {
+        if (instance == null)
+            instance = new DbHelper(context.getApplicationContext());
+        return instance;
+    }
+
+    @Override
+    /**
+     * Turns on foreign key enforcement, which SQLite leaves off on every new connection.
+     * This runs before onCreate and onUpgrade, so migrations are checked too.
+     */
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
     }
 
     @Override
@@ -98,20 +589,68 @@ public class DbHelper extends SQLiteOpenHelper {
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_TASK_TABLE); //===========================
         db.execSQL(CREATE_ALARM_TABLE);
-        db.execSQL(CREATE_ACTIVITY_ALARM_LINKS_TABLE); //===========================
         db.execSQL(CREATE_HISTORIES_TABLE);
+        db.execSQL(CREATE_LEGACY_REQUESTS_TABLE);
+        db.execSQL(CREATE_HISTORY_DAILY_TABLE);
+        db.execSQL(CREATE_SNOOZES_TABLE);
+        createIndexes(db);
+    }
+
+    /** Creating indexes, safe to run on a database that already has them */
+    private void createIndexes(SQLiteDatabase db) {
+        for (String createIndex : CREATE_INDEXES)
+            db.execSQL(createIndex);
     }
 
     @Override
-    // TODO: change this so that updating doesn't delete old data
+    /**
+     * Upgrades by running every migration step from oldVersion up to newVersion in order,
+     * each in its own transaction. Databases older than FIRST_MIGRATED_VERSION predate
+     * the migrations and are still recreated from scratch.
+     */
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion >= FIRST_MIGRATED_VERSION) {
+            for (int version = oldVersion; version < newVersion; version++) {
+                db.beginTransaction();
+                try {
+                    MIGRATIONS[version - FIRST_MIGRATED_VERSION].migrate(db);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+            return;
+        }
+
         db.execSQL("DROP TABLE IF EXISTS " + TASK_TABLE); //===========================
         db.execSQL("DROP TABLE IF EXISTS " + ALARM_TABLE);
-        db.execSQL("DROP TABLE IF EXISTS " + TASK_ALARM_LINKS); //===========================
+        db.execSQL("DROP TABLE IF EXISTS task_alarm"); //===========================
         db.execSQL("DROP TABLE IF EXISTS " + HISTORIES_TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + LEGACY_REQUESTS);
+        db.execSQL("DROP TABLE IF EXISTS " + HISTORY_DAILY_TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + SNOOZES_TABLE);
         onCreate(db);
     }
 
+    /**
+     * Returns the compiled statement for an sql string, compiling it the first time.
+     * The helper is never closed, so statements stay valid for the life of the process.
+     * Callers must synchronize on the returned statement while binding and executing it.
+     * They must not be used inside a transaction: a thread waiting for the statement's lock
+     * while another one holds it and waits for the database would never wake up. Batch
+     * writes compile their own statements instead.
+     * @param sql a statement with ? placeholders for its arguments
+     * @return the cached compiled statement
+     */
+    private synchronized SQLiteStatement getStatement(String sql) {
+        SQLiteStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = getWritableDatabase().compileStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
 // ############################## create methods ###################################### //
 
 
@@ -130,60 +669,98 @@ public class DbHelper extends SQLiteOpenHelper {
 
         long task_id = db.insert(TASK_TABLE, null, values); //===========================
 
+        if (task_id != -1) {
+            synchronized (taskIdCache) {
+                taskIdCache.put(task.getTaskName(), task_id);
+            }
+        }
         return task_id;
     }
 
     /**
-     * takes in a model alarm object and inserts a row into the database
-     *      for each day of the week the alarm is meant to go off.
-     * @param alarm a model alarm object
+     * takes in a model alarm object and inserts it as one row, the days of the week it
+     * goes off are stored as the bits of days_mask
+     * @param alarm a model alarm object, its id is set to the new row_id
      * @param task_id the id associated with the task the alarm is for
-     * @return a array of longs that are the row_ids generated by the database when the rows are inserted
+     * @return the row_id generated by the database when the row is inserted
+     */
+    public long createAlarm(Alarm alarm, long task_id) {
+        createAlarms(Collections.singletonList(alarm), task_id);
+        return alarm.getId();
+    }
+
+    /**
+     * inserts many alarms of one task in a single transaction, so the journal is written
+     * once for the whole batch instead of once per alarm
+     * @param alarms model alarm objects, their ids are set to the new row_ids
+     * @param task_id the id associated with the task the alarms are for
      */
-    public long[] createAlarm(Alarm alarm, long task_id) {
+    public void createAlarms(List<Alarm> alarms, long task_id) {
         SQLiteDatabase db = this.getWritableDatabase();
-        long[] alarm_ids = new long[7];
-
-        /** Create a separate row in the table for every day of the week for this alarm */
-        int arrayPos = 0;
-        for (boolean day : alarm.getDayOfWeek()) {
-            if (day) {
-                ContentValues values = new ContentValues();
-                values.put(KEY_HOUR, alarm.getHour());
-                values.put(KEY_MINUTE, alarm.getMinute());
-                values.put(KEY_DAY_WEEK, arrayPos + 1);
-                values.put(KEY_ALARMS_TASK_NAME, alarm.getTaskName()); //===========================
 
-                /** Insert row */
-                long alarm_id = db.insert(ALARM_TABLE, null, values);
-                alarm_ids[arrayPos] = alarm_id;
+        db.beginTransaction();
+        SQLiteStatement insert = db.compileStatement(INSERT_ALARM);
+        try {
+            for (Alarm alarm : alarms) {
+                insert.bindLong(1, alarm.getHour());
+                insert.bindLong(2, alarm.getMinute());
+                insert.bindString(3, alarm.getTaskName()); //===========================
+                insert.bindLong(4, alarm.getDaysMask());
+                insert.bindLong(5, task_id); //===========================
 
-                /** Link alarm to a task */
-                createTaskAlarmLink(task_id, alarm_id);
+                /** Insert row */
+                alarm.setId(insert.executeInsert());
             }
-            arrayPos++;
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            db.endTransaction();
         }
-        return alarm_ids;
     }
 
     /**
-     * private function that inserts a row into a table that links tasks and alarms
-     *
-     * @param task_id the row_id of the task that is being added to or edited
-     * @param alarm_id the row_id of the alarm that is being added to the task
-     * @return returns the row_id the database creates when a row is created
+     * inserts alarms of any number of tasks in a single transaction. Tasks are found by
+     * name in taskIds, the ones missing from it are created and added to it, so the caller
+     * can keep one map over many batches instead of looking every name up in the database.
+     * @param alarms model alarm objects, their ids are set to the new row_ids
+     * @param taskIds task ids by task name, updated with the tasks created once they are stored
      */
-    private long createTaskAlarmLink(long task_id, long alarm_id) {
+    public void createAlarms(List<Alarm> alarms, Map<String, Long> taskIds) {
         SQLiteDatabase db = this.getWritableDatabase();
+        Map<String, Long> created = new HashMap<>();
+
+        db.beginTransaction();
+        SQLiteStatement insertTask = db.compileStatement(INSERT_TASK);
+        SQLiteStatement insertAlarm = db.compileStatement(INSERT_ALARM);
+        try {
+            for (Alarm alarm : alarms) {
+                Long taskId = taskIds.get(alarm.getTaskName());
+                if (taskId == null)
+                    taskId = created.get(alarm.getTaskName());
+                if (taskId == null) {
+                    insertTask.bindString(1, alarm.getTaskName());
+                    taskId = insertTask.executeInsert();
+                    created.put(alarm.getTaskName(), taskId);
+                }
 
-        ContentValues values = new ContentValues();
-        values.put(KEY_TASKTABLE_ID, task_id); //===========================
-        values.put(KEY_ALARMTABLE_ID, alarm_id);
-
-        /** Insert row */
-        long taskAlarmLink_id = db.insert(TASK_ALARM_LINKS, null, values); //===========================
+                insertAlarm.bindLong(1, alarm.getHour());
+                insertAlarm.bindLong(2, alarm.getMinute());
+                insertAlarm.bindString(3, alarm.getTaskName());
+                insertAlarm.bindLong(4, alarm.getDaysMask());
+                insertAlarm.bindLong(5, taskId);
+                alarm.setId(insertAlarm.executeInsert());
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insertTask.close();
+            insertAlarm.close();
+            db.endTransaction();
+        }
 
-        return taskAlarmLink_id;
+        taskIds.putAll(created);
+        synchronized (taskIdCache) {
+            taskIdCache.putAll(created);
+        }
     }
 
     /**
@@ -191,16 +768,130 @@ public class DbHelper extends SQLiteOpenHelper {
      * @param history a history model object
      */
     public void createHistory(History history) {
-        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement insert = getStatement(INSERT_HISTORY);
+
+        synchronized (insert) {
+            insert.bindString(1, history.getTaskName()); //===========================
+            if (history.getDateString() != null)
+                insert.bindString(2, history.getDateString());
+            else
+                insert.bindNull(2);
+            insert.bindLong(3, history.getHourDone());
+            insert.bindLong(4, history.getMinuteDone());
+            insert.bindLong(5, history.getDoneAt());
+
+            /** Insert row */
+            insert.executeInsert();
+            insert.clearBindings();
+        }
+    }
 
-        ContentValues values = new ContentValues();
-        values.put(KEY_TASKNAME, history.getTaskName()); //===========================
-        values.put(KEY_DATE_STRING, history.getDateString());
-        values.put(KEY_HOUR, history.getHourDone());
-        values.put(KEY_MINUTE, history.getMinuteDone());
+    /**
+     * stores histories in a single transaction, as marking several alerts done at once does
+     * @param histories history model objects
+     */
+    public void createHistories(List<History> histories) {
+        SQLiteDatabase db = this.getWritableDatabase();
+
+        db.beginTransaction();
+        SQLiteStatement insert = db.compileStatement(INSERT_HISTORY);
+        try {
+            for (History history : histories) {
+                insert.bindString(1, history.getTaskName());
+                if (history.getDateString() != null)
+                    insert.bindString(2, history.getDateString());
+                else
+                    insert.bindNull(2);
+                insert.bindLong(3, history.getHourDone());
+                insert.bindLong(4, history.getMinuteDone());
+                insert.bindLong(5, history.getDoneAt());
+
+                /** Insert row */
+                insert.executeInsert();
+                insert.clearBindings();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * stores a snooze, linked to the task of its name
+     * @param snooze a snooze model object, not stored if there is no such task or it is
+     *               snoozed to that time already
+     */
+    public void createSnooze(Snooze snooze) {
+        SQLiteStatement insert = getStatement(INSERT_SNOOZE);
+
+        synchronized (insert) {
+            insert.bindString(1, snooze.getTaskName());
+            insert.bindLong(2, snooze.getFireAt());
+            insert.executeInsert();
+            insert.clearBindings();
+        }
+    }
+
+    /**
+     * Rolls the oldest histories done before a time into history_daily and deletes them,
+     * all in one transaction. A batch is either compacted completely or not at all, so
+     * compaction can be stopped at any point and picked up again by calling this again.
+     * @param before epoch millis, only histories done before it are compacted
+     * @param batchSize the most histories compacted by this call
+     * @return the number of histories compacted, below batchSize once none are left
+     */
+    public int compactHistory(long before, int batchSize) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        String[] args = {String.valueOf(before), String.valueOf(batchSize)};
+        int compacted = 0;
+
+        db.beginTransaction();
+        SQLiteStatement update = db.compileStatement(UPDATE_HISTORY_DAILY);
+        SQLiteStatement insert = db.compileStatement(INSERT_HISTORY_DAILY);
+        SQLiteStatement delete = db.compileStatement(DELETE_OLDEST_HISTORIES);
+        try {
+            Cursor c = db.rawQuery(SELECT_OLDEST_HISTORIES_BY_DAY, args);
+            try {
+                while (c.moveToNext()) {
+                    /** Add to the row of the task and day, or start it */
+                    bindDailyHistory(update, c);
+                    if (update.executeUpdateDelete() == 0) {
+                        bindDailyHistory(insert, c);
+                        if (c.isNull(1))
+                            insert.bindNull(6);
+                        else
+                            insert.bindLong(6, c.getLong(1));
+                        insert.executeInsert();
+                    }
+                    compacted += c.getInt(3);
+                }
+            } finally {
+                c.close();
+            }
 
-        /** Insert row */
-        db.insert(HISTORIES_TABLE, null, values);
+            delete.bindAllArgsAsStrings(args);
+            delete.executeUpdateDelete();
+            db.setTransactionSuccessful();
+        } finally {
+            update.close();
+            insert.close();
+            delete.close();
+            db.endTransaction();
+        }
+        return compacted;
+    }
+
+    /**
+     * Private helper function that binds the arguments UPDATE_HISTORY_DAILY and
+     * INSERT_HISTORY_DAILY share, in that order, from a SELECT_OLDEST_HISTORIES_BY_DAY row
+     */
+    private static void bindDailyHistory(SQLiteStatement statement, Cursor c) {
+        statement.bindLong(1, c.getInt(3));
+        statement.bindLong(2, c.getLong(4));
+        statement.bindLong(3, c.getLong(5));
+        statement.bindString(4, c.getString(0));
+        statement.bindString(5, c.getString(2));
     }
 
 // ############################# get methods ####################################### //
@@ -211,35 +902,55 @@ public class DbHelper extends SQLiteOpenHelper {
      * @return returns a task model object
      */
     public Task getTaskByName(String taskName) { //===========================
-        SQLiteDatabase db = this.getReadableDatabase();
-
-        String dbTask = "select * from " //===========================
-                + TASK_TABLE        + " where " //===========================
-                + KEY_TASKNAME      + " = "
-                + "'"   + taskName  + "'"; //===========================
-
-        Cursor c = db.rawQuery(dbTask, null); //===========================
-
         Task task = new Task(); //===========================
 
-        if (c.moveToFirst() && c.getCount() >= 1) {
-            task.setTaskName(c.getString(c.getColumnIndex(KEY_TASKNAME))); //===========================
-            task.setTaskId(c.getLong(c.getColumnIndex(KEY_ROWID))); //===========================
-            c.close();
+        long taskId = getTaskId(taskName);
+        if (taskId != -1) {
+            task.setTaskId(taskId); //===========================
+            task.setTaskName(taskName); //===========================
         }
         return task;
     }
 
+    /**
+     * looks the id of a task up in the cache, or through the unique name index the first
+     * time, after which it is cached
+     * @param taskName the name of the task
+     * @return the task's row_id, or -1 if there is no such task
+     */
+    public long getTaskId(String taskName) {
+        synchronized (taskIdCache) {
+            Long cached = taskIdCache.get(taskName);
+            if (cached != null)
+                return cached;
+
+            long taskId = -1;
+            SQLiteStatement select = getStatement(SELECT_TASK_ID_BY_NAME);
+            synchronized (select) {
+                select.bindString(1, taskName);
+                try {
+                    taskId = select.simpleQueryForLong();
+                } catch (SQLiteDoneException e) {
+                    /** No such task */
+                }
+                select.clearBindings();
+            }
+
+            if (taskId != -1)
+                taskIdCache.put(taskName, taskId);
+            return taskId;
+        }
+    }
+
     /**
      * allows the taskBox to retrieve all the task rows from database
      * @return a list of task model objects
      */
     public List<Task> getAllTasks() { //===========================
         List<Task> tasks = new ArrayList<>(); //===========================
-        String dbTasks = "SELECT * FROM " + TASK_TABLE; //===========================
 
         SQLiteDatabase db = getReadableDatabase();
-        Cursor c = db.rawQuery(dbTasks, null);
+        Cursor c = db.rawQuery(SELECT_ALL_TASKS, null); //===========================
 
         /** Loops through all rows, adds to list */
         if (c.moveToFirst()) {
@@ -258,237 +969,277 @@ public class DbHelper extends SQLiteOpenHelper {
 
     /**
      * Allows taskBox to retrieve all Alarms linked to a Task
-     * uses combineAlarms helper method
      * @param taskName string
-     * @return list of alarm objects
-     * @throws URISyntaxException honestly do not know why, something about alarm.getDayOfWeek()
-     */
-    public List<Alarm> getAllAlarmsByTask(String taskName) throws URISyntaxException {
-        List<Alarm> alarmsByTask = new ArrayList<Alarm>();
-
-        /** HINT: When reading string: '.' are not periods ex) task.rowIdNumber */
-        String selectQuery = "SELECT * FROM "       +
-                ALARM_TABLE         + " alarm, "    +
-                TASK_TABLE          + " task, "     +
-                TASK_ALARM_LINKS    + " taskAlarm WHERE "           +
-                "task."             + KEY_TASKNAME      + " = '"    + taskName + "'" +
-                " AND task."        + KEY_ROWID         + " = "     +
-                "taskAlarm."        + KEY_TASKTABLE_ID  +
-                " AND alarm."       + KEY_ROWID         + " = "     +
-                "taskAlarm."        + KEY_ALARMTABLE_ID;
-
+     * @return list of alarm objects sorted by time of day
+     */
+    public List<Alarm> getAllAlarmsByTask(String taskName) {
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor c = db.rawQuery(selectQuery, null);
+        Cursor c = db.rawQuery(SELECT_ALARMS_BY_TASK, new String[]{taskName});
 
-        if (c.moveToFirst()) {
-            do {
-                Alarm al = new Alarm();
-                al.setId(c.getInt(c.getColumnIndex(KEY_ROWID)));
-                al.setHour(c.getInt(c.getColumnIndex(KEY_HOUR)));
-                al.setMinute(c.getInt(c.getColumnIndex(KEY_MINUTE)));
-                al.setTaskName(c.getString(c.getColumnIndex(KEY_ALARMS_TASK_NAME)));
-
-                alarmsByTask.add(al);
-            } while (c.moveToNext());
-        }
-
-        c.close();
+        List<Alarm> alarmsByTask = readAlarms(c);
+        Collections.sort(alarmsByTask);
+        return alarmsByTask;
+    }
 
+    /**
+     * Allows taskBox to retrieve every alarm of every task
+     * @return list of alarm objects
+     */
+    public List<Alarm> getAllAlarms() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor c = db.rawQuery(SELECT_ALL_ALARMS, null);
 
-        return combineAlarms(alarmsByTask);
+        return readAlarms(c);
     }
 
     /**
-     * returns all individual alarms that occur on a certain day of the week,
-     * alarms returned do not know of their counterparts that occur on different days
-     * @param day an integer that represents the day of week
-     * @return a list of Alarms (not combined into full-model-alarms)
+     * returns all alarms that go off on a certain day of the week
+     * @param day an integer that represents the day of week, Sunday is 1
+     * @return a list of Alarms
      */
     public List<Alarm> getAlarmsByDay(int day) {
-        List<Alarm> daysAlarms = new ArrayList<Alarm>();
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery(SELECT_ALARMS_BY_DAY,
+                new String[]{String.valueOf(Alarm.dayBit(day))});
 
-        String selectQuery = "SELECT * FROM "       +
-                ALARM_TABLE     + " alarm WHERE "   +
-                "alarm."        + KEY_DAY_WEEK      +
-                " = '"          + day               + "'";
+        return readAlarms(c);
+    }
 
+    /**
+     * @param alarm_id the row_id of the alarm
+     * @return the alarm, or null if there is no such alarm
+     */
+    public Alarm getAlarmById(long alarm_id) {
         SQLiteDatabase db = getReadableDatabase();
-        Cursor c = db.rawQuery(selectQuery, null);
+        Cursor c = db.rawQuery(SELECT_ALARM_BY_ID, new String[]{String.valueOf(alarm_id)});
+
+        List<Alarm> alarms = readAlarms(c);
+        return alarms.isEmpty() ? null : alarms.get(0);
+    }
+
+    /**
+     * Private helper function that turns every row of an alarm cursor into a model-alarm
+     * and closes the cursor.
+     * @param c a cursor over all columns of the alarm table
+     * @return a list of model-alarms in cursor order
+     */
+    private List<Alarm> readAlarms(Cursor c) {
+        List<Alarm> alarms = new ArrayList<>();
 
         if (c.moveToFirst()) {
+            int idIndex = c.getColumnIndex(KEY_ROWID);
+            int hourIndex = c.getColumnIndex(KEY_HOUR);
+            int minuteIndex = c.getColumnIndex(KEY_MINUTE);
+            int nameIndex = c.getColumnIndex(KEY_ALARMS_TASK_NAME);
+            int maskIndex = c.getColumnIndex(KEY_DAYS_MASK);
             do {
                 Alarm al = new Alarm();
-                al.setId(c.getInt(c.getColumnIndex(KEY_ROWID)));
-                al.setHour(c.getInt(c.getColumnIndex(KEY_HOUR)));
-                al.setMinute(c.getInt(c.getColumnIndex(KEY_MINUTE)));
-                al.setTaskName(c.getString(c.getColumnIndex(KEY_ALARMS_TASK_NAME)));
+                al.setId(c.getLong(idIndex));
+                al.setHour(c.getInt(hourIndex));
+                al.setMinute(c.getInt(minuteIndex));
+                al.setTaskName(c.getString(nameIndex));
+                al.setDaysMask(c.getInt(maskIndex));
 
-                daysAlarms.add(al);
+                alarms.add(al);
             } while (c.moveToNext());
         }
         c.close();
 
-        return daysAlarms;
+        return alarms;
     }
 
-
     /**
-     *
-     * @param alarm_id
-     * @return
-     * @throws URISyntaxException
+     * Returns the request codes of OS alarms registered by older versions of the app and
+     * forgets them, so they are handed out exactly once.
+     * @return the request codes, empty once they have been taken
      */
-    public Alarm getAlarmById(long alarm_id) throws URISyntaxException {
-
-        String dbAlarm = "SELECT * FROM "   +
-                ALARM_TABLE + " WHERE "     +
-                KEY_ROWID   + " = "         + alarm_id;
-
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor c = db.rawQuery(dbAlarm, null);
+    public List<Integer> takeLegacyRequestCodes() {
+        List<Integer> requestCodes = new ArrayList<>();
+        SQLiteDatabase db = getWritableDatabase();
 
-        if (c != null)
-            c.moveToFirst();
+        db.beginTransaction();
+        try {
+            Cursor c = db.rawQuery(SELECT_LEGACY_REQUEST_CODES, null);
+            while (c.moveToNext())
+                requestCodes.add(c.getInt(0));
+            c.close();
 
-        Alarm al = new Alarm();
-        al.setId(c.getInt(c.getColumnIndex(KEY_ROWID)));
-        al.setHour(c.getInt(c.getColumnIndex(KEY_HOUR)));
-        al.setMinute(c.getInt(c.getColumnIndex(KEY_MINUTE)));
-        al.setTaskName(c.getString(c.getColumnIndex(KEY_ALARMS_TASK_NAME)));
+            db.delete(LEGACY_REQUESTS, null, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return requestCodes;
+    }
 
+    /** @return every snooze, soonest first */
+    public List<Snooze> getAllSnoozes() {
+        Cursor c = getReadableDatabase().rawQuery(SELECT_ALL_SNOOZES, null);
+        List<Snooze> snoozes = readSnoozes(c);
         c.close();
-
-        return al;
+        return snoozes;
     }
 
     /**
-     * Private helper function that combines rows in the databse back into a
-     * full model-alarm with a dayOfWeek array.
-     * @param dbAlarms a list of dbAlarms (not-full-alarms w/out day of week info)
-     * @return a list of model-alarms
-     * @throws URISyntaxException
+     * Returns the snoozes going off at or before a time and deletes them, in one transaction
+     * so a snooze is handed out exactly once.
+     * @param until epoch millis
+     * @return the snoozes, soonest first
      */
-    private List<Alarm> combineAlarms(List<Alarm> dbAlarms) throws URISyntaxException {
-        List<String> timesOfDay = new ArrayList<>();
-        List<Alarm> combinedAlarms = new ArrayList<>();
+    public List<Snooze> takeSnoozesUntil(long until) {
+        SQLiteDatabase db = getWritableDatabase();
+        List<Snooze> snoozes;
 
-        for (Alarm al : dbAlarms) {
-            if (timesOfDay.contains(al.getStringTime())) {
-                /** Add this db row to alarm object */
-                for (Alarm ala : combinedAlarms) {
-                    if (ala.getStringTime().equals(al.getStringTime())) {
-                        int day = getDayOfWeek(al.getId());
-                        boolean[] days = ala.getDayOfWeek();
-                        days[day-1] = true;
-                        ala.setDayOfWeek(days);
-                        ala.addId(al.getId());
-                    }
-                }
-            } else {
-                /** Create new Alarm object with day of week array */
-                Alarm newAlarm = new Alarm();
-                boolean[] days = new boolean[7];
-
-                newAlarm.setTaskName(al.getTaskName());
-                newAlarm.setMinute(al.getMinute());
-                newAlarm.setHour(al.getHour());
-                newAlarm.addId(al.getId());
-
-                int day = getDayOfWeek(al.getId());
-                days[day-1] = true;
-                newAlarm.setDayOfWeek(days);
-
-                timesOfDay.add(al.getStringTime());
-                combinedAlarms.add(newAlarm);
-            }
+        db.beginTransaction();
+        try {
+            Cursor c = db.rawQuery(SELECT_SNOOZES_UNTIL, new String[]{Long.toString(until)});
+            snoozes = readSnoozes(c);
+            c.close();
+
+            db.execSQL(DELETE_SNOOZES_UNTIL, new Object[]{until});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
+        return snoozes;
+    }
 
-        Collections.sort(combinedAlarms);
-        return combinedAlarms;
+    /** Private helper function that reads SELECT_ALL_SNOOZES or SELECT_SNOOZES_UNTIL rows */
+    private static List<Snooze> readSnoozes(Cursor c) {
+        List<Snooze> snoozes = new ArrayList<>();
+        while (c.moveToNext())
+            snoozes.add(new Snooze(c.getString(0), c.getLong(1)));
+        return snoozes;
     }
 
     /**
-     * Get a single taskapp.Model-Alarm
-     * Used as a helper function
+     * allows taskBox to retrieve from History table
+     * @return a list of all history objects
      */
-    public int getDayOfWeek(long alarm_id) throws URISyntaxException {
-        SQLiteDatabase db = this.getReadableDatabase();
+    public List<History> getHistory() {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery(SELECT_ALL_HISTORY, null);
 
-        String dbAlarm = "SELECT * FROM "   +
-                ALARM_TABLE + " WHERE "     +
-                KEY_ROWID   + " = "         + alarm_id;
+        return readHistories(c);
+    }
 
-        Cursor c = db.rawQuery(dbAlarm, null);
+    /**
+     * returns one page of histories, newest first. Pages are found by id rather than by
+     * offset, so every page is a short walk down the primary key however far back it is.
+     * @param beforeId only histories with a smaller id are returned, Long.MAX_VALUE for
+     *                 the first page, the id of the last history of a page for the next one
+     * @param limit the most histories to return
+     * @return a list of history objects, empty after the last page
+     */
+    public List<History> getHistoryPage(long beforeId, int limit) {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery(SELECT_HISTORY_PAGE,
+                new String[]{String.valueOf(beforeId), String.valueOf(limit)});
 
-        if (c != null)
-            c.moveToFirst();
+        return readHistories(c);
+    }
 
-        int dayOfWeek = c.getInt(c.getColumnIndex(KEY_DAY_WEEK));
-        c.close();
+    /**
+     * returns the histories done in a time range, read through the done_at index
+     * @param from start of the range in epoch millis, included
+     * @param to end of the range in epoch millis, excluded
+     * @return a list of history objects, oldest first
+     */
+    public List<History> getHistoryBetween(long from, long to) {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery(SELECT_HISTORY_BETWEEN,
+                new String[]{String.valueOf(from), String.valueOf(to)});
 
-        return dayOfWeek;
+        return readHistories(c);
     }
 
     /**
-     * allows taskBox to retrieve from History table
-     * @return a list of all history objects
+     * returns the histories of one task done in a time range, read through the
+     * (task_id, done_at) index
+     * @param taskName the name of the task
+     * @param from start of the range in epoch millis, included
+     * @param to end of the range in epoch millis, excluded
+     * @return a list of history objects, oldest first
      */
-    public List<History> getHistory() {
-        List<History> allHistory = new ArrayList<>();
-        String dbHist = "SELECT * FROM " + HISTORIES_TABLE;
-
+    public List<History> getHistoryByTaskBetween(String taskName, long from, long to) {
         SQLiteDatabase db = getReadableDatabase();
-        Cursor c = db.rawQuery(dbHist, null);
+        Cursor c = db.rawQuery(SELECT_HISTORY_BY_TASK_BETWEEN,
+                new String[]{taskName, String.valueOf(from), String.valueOf(to)});
+
+        return readHistories(c);
+    }
+
+    /**
+     * Private helper function that turns every row of a history cursor into a history
+     * object and closes the cursor.
+     * @param c a cursor over all columns of the histories table
+     * @return a list of history objects in cursor order
+     */
+    private List<History> readHistories(Cursor c) {
+        List<History> histories = new ArrayList<>();
 
         if (c.moveToFirst()) {
+            int idIndex = c.getColumnIndex(KEY_ROWID);
+            int nameIndex = c.getColumnIndex(KEY_TASKNAME);
+            int dateIndex = c.getColumnIndex(KEY_DATE_STRING);
+            int hourIndex = c.getColumnIndex(KEY_HOUR);
+            int minuteIndex = c.getColumnIndex(KEY_MINUTE);
+            int doneAtIndex = c.getColumnIndex(KEY_DONE_AT);
             do {
                 History h = new History();
-                h.setTaskName(c.getString(c.getColumnIndex(KEY_TASKNAME)));
-                h.setDateString(c.getString(c.getColumnIndex(KEY_DATE_STRING)));
-                h.setHourDone(c.getInt(c.getColumnIndex(KEY_HOUR)));
-                h.setMinuteDone(c.getInt(c.getColumnIndex(KEY_MINUTE)));
-
-                allHistory.add(h);
+                h.setId(c.getLong(idIndex));
+                h.setTaskName(c.getString(nameIndex));
+                h.setDateString(c.getString(dateIndex));
+                h.setHourDone(c.getInt(hourIndex));
+                h.setMinuteDone(c.getInt(minuteIndex));
+                h.setDoneAt(c.getLong(doneAtIndex));
+
+                histories.add(h);
             } while (c.moveToNext());
         }
         c.close();
-        return allHistory;
+        return histories;
     }
 
     
 // ############################### delete methods##################################### //
 
 
-    private void deleteTaskAlarmLinks(long alarmId) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TASK_ALARM_LINKS, KEY_ALARMTABLE_ID
-                + " = ?", new String[]{String.valueOf(alarmId)});
-    }
-
     public void deleteAlarm(long alarmId) {
-        SQLiteDatabase db = this.getWritableDatabase();
-
-        /** First delete any link in TaskAlarmLink Table */
-        deleteTaskAlarmLinks(alarmId);
+        SQLiteStatement delete = getStatement(DELETE_ALARM_BY_ID);
+        synchronized (delete) {
+            delete.bindLong(1, alarmId);
+            delete.executeUpdateDelete();
+        }
+    }
 
-        /* Then delete alarm */
-        db.delete(ALARM_TABLE, KEY_ROWID
-                + " = ?", new String[]{String.valueOf(alarmId)});
+    public void deleteTask(String taskName) {
+        deleteTasks(Collections.singletonList(taskName));
     }
 
-    public void deleteTask(String taskName) throws URISyntaxException {
+    /**
+     * deletes tasks in a single transaction, one statement per task. Their alarms and snoozes
+     * go with them through the foreign key, their histories are kept.
+     * @param taskNames the names of the tasks
+     */
+    public void deleteTasks(Collection<String> taskNames) {
         SQLiteDatabase db = this.getWritableDatabase();
-        List<Alarm> tasksAlarms;
 
-        /** First get all Alarms and delete them and their Task-links */
-        tasksAlarms = getAllAlarmsByTask(taskName);
-        for (Alarm alarm : tasksAlarms) {
-            long id = alarm.getId();
-            deleteAlarm(id);
+        db.beginTransaction();
+        SQLiteStatement deleteTask = db.compileStatement(DELETE_TASK_BY_NAME);
+        try {
+            for (String taskName : taskNames) {
+                deleteTask.bindString(1, taskName);
+                deleteTask.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            deleteTask.close();
+            db.endTransaction();
         }
 
-        /** Then delete Task */
-        db.delete(TASK_TABLE, KEY_TASKNAME
-                + " = ?", new String[]{taskName});
+        synchronized (taskIdCache) {
+            taskIdCache.keySet().removeAll(taskNames);
+        }
     }
 }
\ No newline at end of file
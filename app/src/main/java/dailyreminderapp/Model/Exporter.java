@@ -0,0 +1,247 @@
+package dailyreminderapp.Model;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Writes the tables of the database out to files, as CSV with a header line or as
+ * newline delimited JSON with one object per row.
+ *
+ * Rows are read from the cursor and written one at a time through a fixed size buffer, so
+ * memory use is the same for ten rows as for a million. Exports read whole tables and
+ * write files, so they should not be run on the main thread.
+ */
+public class Exporter {
+
+    public enum Format { CSV, JSON }
+
+    /** Size of the buffer between the rows and the file */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DbHelper db;
+
+    public Exporter(Context c) {
+        this(DbHelper.getInstance(c));
+    }
+
+    /** Constructor for another helper than the shared one, used by tests */
+    Exporter(DbHelper db) {
+        this.db = db;
+    }
+
+    /** Writes every task: id, taskName */
+    public void exportTasks(File file, Format format) throws IOException {
+        export(DbHelper.EXPORT_TASKS, file, format);
+    }
+
+    /** Writes every alarm: id, task_id, taskName, hour, minute, days_mask (see Alarm.getDaysMask) */
+    public void exportAlarms(File file, Format format) throws IOException {
+        export(DbHelper.EXPORT_ALARMS, file, format);
+    }
+
+    /** Writes every history: id, task_id, taskName, done_at, date, hour, minute */
+    public void exportHistory(File file, Format format) throws IOException {
+        export(DbHelper.EXPORT_HISTORY, file, format);
+    }
+
+    /**
+     * Writes the daily totals histories are compacted into:
+     * task_id, taskName, day, done_count, first_done_at, last_done_at
+     */
+    public void exportDailyHistory(File file, Format format) throws IOException {
+        export(DbHelper.EXPORT_HISTORY_DAILY, file, format);
+    }
+
+    /**
+     * Runs a query and writes its rows to a file, replacing what the file held
+     * @param sql one of the DbHelper export queries
+     */
+    private void export(String sql, File file, Format format) throws IOException {
+        /** The file is opened first, so failing to open it cannot leave the cursor open */
+        ChannelWriter out = new ChannelWriter(new FileOutputStream(file));
+        try {
+            Cursor c = db.getReadableDatabase().rawQuery(sql, null);
+            try {
+                writeRows(c, out, format);
+            } finally {
+                c.close();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Writes the header line of a CSV file, if it is one, and every row of the cursor */
+    private static void writeRows(Cursor c, ChannelWriter out, Format format) throws IOException {
+        String[] columns = c.getColumnNames();
+        StringBuilder line = new StringBuilder();
+
+        if (format == Format.CSV) {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0)
+                    line.append(',');
+                appendCsv(line, columns[i]);
+            }
+            line.append('\n');
+            out.write(line);
+        }
+
+        while (c.moveToNext()) {
+            line.setLength(0);
+            if (format == Format.CSV)
+                appendCsvRow(line, c);
+            else
+                appendJsonRow(line, c, columns);
+            out.write(line);
+        }
+    }
+
+    /** Appends the current row as a CSV line, nulls are empty fields */
+    private static void appendCsvRow(StringBuilder line, Cursor c) {
+        for (int i = 0; i < c.getColumnCount(); i++) {
+            if (i > 0)
+                line.append(',');
+            switch (c.getType(i)) {
+                case Cursor.FIELD_TYPE_NULL:
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    line.append(c.getLong(i));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    line.append(c.getDouble(i));
+                    break;
+                default:
+                    appendCsv(line, c.getString(i));
+            }
+        }
+        line.append('\n');
+    }
+
+    /** Appends a CSV field, quoted if it holds a comma, quote or line break */
+    private static void appendCsv(StringBuilder line, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"')
+                line.append('"');
+            line.append(ch);
+        }
+        line.append('"');
+    }
+
+    /** Appends the current row as one JSON object on its own line */
+    private static void appendJsonRow(StringBuilder line, Cursor c, String[] columns) {
+        line.append('{');
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0)
+                line.append(',');
+            appendJson(line, columns[i]);
+            line.append(':');
+            switch (c.getType(i)) {
+                case Cursor.FIELD_TYPE_NULL:
+                    line.append("null");
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    line.append(c.getLong(i));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    line.append(c.getDouble(i));
+                    break;
+                default:
+                    appendJson(line, c.getString(i));
+            }
+        }
+        line.append("}\n");
+    }
+
+    /** Appends a JSON string, escaping quotes, backslashes and control characters */
+    private static void appendJson(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20)
+                        line.append(String.format("\\u%04x", (int) ch));
+                    else
+                        line.append(ch);
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * Encodes text as UTF-8 into a fixed buffer and writes the buffer to a file channel
+     * whenever it is full
+     */
+    private static class ChannelWriter {
+        private final FileOutputStream stream;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        ChannelWriter(FileOutputStream stream) {
+            this.stream = stream;
+            this.channel = stream.getChannel();
+        }
+
+        void write(CharSequence text) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(text);
+            while (encoder.encode(chars, buffer, false).isOverflow())
+                flush();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        /** Writes what is left in the buffer and closes the file */
+        void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                stream.close();
+            }
+        }
+    }
+}
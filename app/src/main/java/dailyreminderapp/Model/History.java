@@ -8,10 +8,16 @@ package dailyreminderapp.Model;
  * which represent the time and date at which the medication was taken.
  */
 public class History {
+    private long id;
     private int hourDone;
     private int minuteDone;
     private String dateString;
     private String taskName;
+    private long doneAt; // Epoch millis of when the task was done, hourDone and minuteDone are part of it
+
+    public long getId() { return id; }
+
+    public void setId(long id) { this.id = id; }
 
     public int getHourDone() { return hourDone; }
 
@@ -27,6 +33,10 @@ public class History {
 
     public void setDateString(String dateString) { this.dateString = dateString; }
 
+    public long getDoneAt() { return doneAt; }
+
+    public void setDoneAt(long doneAt) { this.doneAt = doneAt; }
+
     public String getTaskName() {
         return taskName;
     }
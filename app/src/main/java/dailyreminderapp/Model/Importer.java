@@ -0,0 +1,220 @@
+package dailyreminderapp.Model;
+
+import android.content.Context;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads alarms from a file and stores them, creating their tasks as needed. The file has
+ * the format of Exporter.exportAlarms: CSV with a header line, or newline delimited JSON.
+ * Only the taskName, hour, minute and days_mask columns are read, others such as the ids
+ * of an exported file are ignored. Rows that are not a valid alarm are skipped.
+ *
+ * Task names are looked up in a map loaded once, and alarms are stored IMPORT_BATCH_SIZE
+ * at a time, each batch in one transaction. Imports read and write a lot, so they should
+ * not be run on the main thread. Setting the alarmManager alarms is left to the caller.
+ * The ModelCache is emptied and ModelEvents resets afterwards, so screens see the imported alarms.
+ */
+public class Importer {
+
+    /** Alarms stored per transaction */
+    private static final int IMPORT_BATCH_SIZE = 2000;
+
+    private static final String COLUMN_TASK_NAME = "taskName";
+    private static final String COLUMN_HOUR      = "hour";
+    private static final String COLUMN_MINUTE    = "minute";
+    private static final String COLUMN_DAYS_MASK = "days_mask";
+
+    private final DbHelper db;
+    private int skippedRows;
+
+    public Importer(Context c) {
+        this(DbHelper.getInstance(c));
+    }
+
+    /** Constructor for another helper than the shared one, used by tests */
+    Importer(DbHelper db) {
+        this.db = db;
+    }
+
+    /** @return the number of rows the last import skipped because they were not valid alarms */
+    public int getSkippedRows() {
+        return skippedRows;
+    }
+
+    /**
+     * Stores every alarm of a file. If reading or storing fails the batches stored before
+     * the failure are kept.
+     * @param file a file written by Exporter.exportAlarms, or in the same format
+     * @param format the format of the file
+     * @return the alarms stored, with their ids set
+     */
+    public List<Alarm> importAlarms(File file, Exporter.Format format) throws IOException {
+        skippedRows = 0;
+
+        Map<String, Long> taskIds = new HashMap<>();
+        for (Task task : db.getAllTasks())
+            taskIds.put(task.getTaskName(), task.getTaskId());
+
+        List<Alarm> imported = new ArrayList<>();
+        List<Alarm> batch = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            List<String> header = null;
+            String record;
+            while ((record = readRecord(reader, format)) != null) {
+                Alarm alarm;
+                if (format == Exporter.Format.CSV) {
+                    if (header == null) {
+                        header = parseCsv(record);
+                        continue;
+                    }
+                    alarm = parseCsvAlarm(header, parseCsv(record));
+                } else {
+                    alarm = parseJsonAlarm(record);
+                }
+
+                if (alarm == null) {
+                    skippedRows++;
+                    continue;
+                }
+                batch.add(alarm);
+
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    db.createAlarms(batch, taskIds);
+                    imported.addAll(batch);
+                    batch.clear();
+                }
+            }
+            db.createAlarms(batch, taskIds);
+            imported.addAll(batch);
+        } finally {
+            reader.close();
+            /** The alarms were stored around the taskBox, the cache and the screens read them again */
+            ModelCache.getInstance().invalidate();
+            ModelEvents.getInstance().reset();
+        }
+        return imported;
+    }
+
+    /**
+     * Reads the next record: a JSON line, or a CSV line together with the lines after it
+     * when a quoted field holds line breaks. Blank lines are skipped.
+     * @return the record, or null at the end of the file
+     */
+    private static String readRecord(BufferedReader reader, Exporter.Format format) throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+        } while (line != null && line.trim().length() == 0);
+
+        if (line == null || format != Exporter.Format.CSV)
+            return line;
+
+        StringBuilder record = new StringBuilder(line);
+        while (countQuotes(record) % 2 != 0) {
+            line = reader.readLine();
+            if (line == null)
+                break;
+            record.append('\n').append(line);
+        }
+        return record.toString();
+    }
+
+    private static int countQuotes(CharSequence text) {
+        int quotes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"')
+                quotes++;
+        }
+        return quotes;
+    }
+
+    /** Splits a CSV record into its fields, unquoting quoted ones */
+    private static List<String> parseCsv(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < record.length(); i++) {
+            char ch = record.charAt(i);
+            if (quoted) {
+                if (ch == '"' && i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (ch == '"') {
+                    quoted = false;
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /** @return the alarm of a CSV row, or null if the row is not a valid alarm */
+    private static Alarm parseCsvAlarm(List<String> header, List<String> fields) {
+        try {
+            return newAlarm(field(header, fields, COLUMN_TASK_NAME),
+                    Integer.parseInt(field(header, fields, COLUMN_HOUR).trim()),
+                    Integer.parseInt(field(header, fields, COLUMN_MINUTE).trim()),
+                    Integer.parseInt(field(header, fields, COLUMN_DAYS_MASK).trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /** @return the field of a row under a column of the header */
+    private static String field(List<String> header, List<String> fields, String column) {
+        return fields.get(header.indexOf(column));
+    }
+
+    /** @return the alarm of a JSON line, or null if the line is not a valid alarm */
+    private static Alarm parseJsonAlarm(String line) {
+        try {
+            JSONObject object = new JSONObject(line);
+            return newAlarm(object.getString(COLUMN_TASK_NAME),
+                    object.getInt(COLUMN_HOUR),
+                    object.getInt(COLUMN_MINUTE),
+                    object.getInt(COLUMN_DAYS_MASK));
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /** @return the alarm, or null if one of its values is out of range */
+    private static Alarm newAlarm(String taskName, int hour, int minute, int daysMask) {
+        if (taskName.length() == 0 || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || daysMask <= 0 || daysMask > 0x7f)
+            return null;
+
+        Alarm alarm = new Alarm();
+        alarm.setTaskName(taskName);
+        alarm.setHour(hour);
+        alarm.setMinute(minute);
+        alarm.setDaysMask(daysMask);
+        return alarm;
+    }
+}
@@ -0,0 +1,497 @@
+package dailyreminderapp.Model;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A TaskStore kept in plain Java collections, for running and measuring the model on a JVM.
+ * Nothing survives the object. Rows are indexed by their ids and times the way the SQLite
+ * tables are, so lookups cost about what the indexed queries do.
+ *
+ * Ids are handed out in order from 1, so rows are kept in arrays at their id, null once
+ * deleted, and the alarms of a task are a sorted array of their ids; no id is boxed.
+ * Snoozes are sorted parallel arrays of times and task names, like ScheduleIndex.
+ * Histories are also ordered by done_at in a TreeSet of the rows, which is keyed by the
+ * rows themselves, as the done_at index is inserted into anywhere.
+ */
+public class InMemoryTaskStore implements TaskStore {
+
+    /** A stored history and the id of its task, 0 once the task is deleted */
+    private static class HistoryRow {
+        final History history;
+        long taskId;
+
+        HistoryRow(History history, long taskId) {
+            this.history = history;
+            this.taskId = taskId;
+        }
+    }
+
+    /** Ids in ascending order in a growable long[], the alarms of a task */
+    private static class IdList {
+        long[] ids = new long[4];
+        int size;
+
+        /** Ids are handed out in order, so a new one goes last */
+        void add(long id) {
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        boolean remove(long id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i < 0)
+                return false;
+            System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+            size--;
+            return true;
+        }
+    }
+
+    /** Orders histories by done_at and then by id, like the done_at index */
+    private static final Comparator<HistoryRow> BY_DONE_AT = new Comparator<HistoryRow>() {
+        @Override
+        public int compare(HistoryRow a, HistoryRow b) {
+            if (a.history.getDoneAt() != b.history.getDoneAt())
+                return a.history.getDoneAt() < b.history.getDoneAt() ? -1 : 1;
+            if (a.history.getId() != b.history.getId())
+                return a.history.getId() < b.history.getId() ? -1 : 1;
+            return 0;
+        }
+    };
+
+    private long nextTaskId = 1;
+    private long nextAlarmId = 1;
+    private long nextHistoryId = 1;
+
+    /** Rows at their id */
+    private Task[] tasks = new Task[16];
+    private Alarm[] alarms = new Alarm[16];
+    private HistoryRow[] histories = new HistoryRow[16];
+    private long firstHistoryId = 1; // Lower ids were all compacted
+
+    private final Map<String, Task> tasksByName = new HashMap<>();
+    private IdList[] alarmIdsByTask = new IdList[16]; // At the task id
+    private long[] alarmTaskIds = new long[16]; // The task of each alarm, at the alarm id
+    private final TreeSet<HistoryRow> historiesByDoneAt = new TreeSet<>(BY_DONE_AT);
+    private TreeSet<HistoryRow>[] historiesByTask = newHistorySets(16); // At the task id
+
+    /** Daily totals of compacted histories: count, first and last done_at by task name and day */
+    private final Map<String, long[]> dailyHistory = new HashMap<>();
+
+    /** Snoozes sorted by time and then task name, the first snoozeCount of the arrays */
+    private long[] snoozeTimes = new long[4];
+    private String[] snoozeNames = new String[4];
+    private int snoozeCount;
+
+    // ############################## tasks ####################################### //
+
+    @Override
+    public synchronized long createTask(Task task) {
+        if (tasksByName.containsKey(task.getTaskName()))
+            return -1;
+
+        long taskId = nextTaskId++;
+        Task stored = new Task();
+        stored.setTaskName(task.getTaskName());
+        stored.setTaskId(taskId);
+
+        tasks = grow(tasks, taskId);
+        tasks[(int) taskId] = stored;
+        tasksByName.put(task.getTaskName(), stored);
+        return taskId;
+    }
+
+    @Override
+    public synchronized List<Task> getAllTasks() {
+        List<Task> all = new ArrayList<>();
+        for (int id = 1; id < nextTaskId; id++) {
+            if (tasks[id] != null)
+                all.add(copy(tasks[id]));
+        }
+        return all;
+    }
+
+    @Override
+    public synchronized Task getTaskByName(String taskName) {
+        Task task = tasksByName.get(taskName);
+        return task == null ? new Task() : copy(task);
+    }
+
+    @Override
+    public synchronized long getTaskId(String taskName) {
+        Task task = tasksByName.get(taskName);
+        return task == null ? -1 : task.getTaskId();
+    }
+
+    @Override
+    public void deleteTask(String taskName) {
+        deleteTasks(Collections.singletonList(taskName));
+    }
+
+    @Override
+    public synchronized void deleteTasks(Collection<String> taskNames) {
+        for (String taskName : taskNames) {
+            Task task = tasksByName.remove(taskName);
+            if (task == null)
+                continue;
+            int taskId = (int) task.getTaskId();
+            tasks[taskId] = null;
+
+            IdList alarmIds = alarmIdsByTask[taskId];
+            if (alarmIds != null) {
+                for (int i = 0; i < alarmIds.size; i++) {
+                    alarms[(int) alarmIds.ids[i]] = null;
+                    alarmTaskIds[(int) alarmIds.ids[i]] = 0;
+                }
+                alarmIdsByTask[taskId] = null;
+            }
+            if (historiesByTask[taskId] != null) {
+                for (HistoryRow row : historiesByTask[taskId])
+                    row.taskId = 0;
+                historiesByTask[taskId] = null;
+            }
+        }
+
+        /** The snoozes of the tasks, keeping the others in order */
+        int kept = 0;
+        for (int i = 0; i < snoozeCount; i++) {
+            if (!taskNames.contains(snoozeNames[i])) {
+                snoozeTimes[kept] = snoozeTimes[i];
+                snoozeNames[kept++] = snoozeNames[i];
+            }
+        }
+        Arrays.fill(snoozeNames, kept, snoozeCount, null);
+        snoozeCount = kept;
+    }
+
+    // ############################## alarms ###################################### //
+
+    @Override
+    public long createAlarm(Alarm alarm, long task_id) {
+        createAlarms(Collections.singletonList(alarm), task_id);
+        return alarm.getId();
+    }
+
+    @Override
+    public synchronized void createAlarms(List<Alarm> alarmsOfTask, long task_id) {
+        if (at(tasks, task_id) == null)
+            throw new IllegalArgumentException("No task with id " + task_id);
+
+        IdList alarmIds = alarmIdsByTask[(int) task_id];
+        if (alarmIds == null) {
+            alarmIds = new IdList();
+            alarmIdsByTask[(int) task_id] = alarmIds;
+        }
+        for (Alarm alarm : alarmsOfTask) {
+            long alarmId = nextAlarmId++;
+            alarm.setId(alarmId);
+            alarms = grow(alarms, alarmId);
+            if (alarmId >= alarmTaskIds.length)
+                alarmTaskIds = Arrays.copyOf(alarmTaskIds, alarms.length);
+
+            alarms[(int) alarmId] = copy(alarm);
+            alarmTaskIds[(int) alarmId] = task_id;
+            alarmIds.add(alarmId);
+        }
+    }
+
+    @Override
+    public synchronized List<Alarm> getAllAlarms() {
+        List<Alarm> all = new ArrayList<>();
+        for (int id = 1; id < nextAlarmId; id++) {
+            if (alarms[id] != null)
+                all.add(copy(alarms[id]));
+        }
+        return all;
+    }
+
+    @Override
+    public synchronized List<Alarm> getAllAlarmsByTask(String taskName) {
+        List<Alarm> ofTask = new ArrayList<>();
+        Task task = tasksByName.get(taskName);
+        IdList alarmIds = task == null ? null : alarmIdsByTask[(int) task.getTaskId()];
+        if (alarmIds != null) {
+            for (int i = 0; i < alarmIds.size; i++)
+                ofTask.add(copy(alarms[(int) alarmIds.ids[i]]));
+        }
+        Collections.sort(ofTask);
+        return ofTask;
+    }
+
+    @Override
+    public synchronized List<Alarm> getAlarmsByDay(int day) {
+        List<Alarm> ofDay = new ArrayList<>();
+        int bit = Alarm.dayBit(day);
+        for (int id = 1; id < nextAlarmId; id++) {
+            if (alarms[id] != null && (alarms[id].getDaysMask() & bit) != 0)
+                ofDay.add(copy(alarms[id]));
+        }
+        return ofDay;
+    }
+
+    @Override
+    public synchronized Alarm getAlarmById(long alarm_id) {
+        Alarm alarm = at(alarms, alarm_id);
+        return alarm == null ? null : copy(alarm);
+    }
+
+    @Override
+    public synchronized void deleteAlarm(long alarmId) {
+        if (at(alarms, alarmId) == null)
+            return;
+        alarms[(int) alarmId] = null;
+        alarmIdsByTask[(int) alarmTaskIds[(int) alarmId]].remove(alarmId);
+        alarmTaskIds[(int) alarmId] = 0;
+    }
+
+    // ############################## histories ################################### //
+
+    @Override
+    public synchronized void createHistory(History history) {
+        History stored = copy(history);
+        long historyId = nextHistoryId++;
+        stored.setId(historyId);
+
+        Task task = tasksByName.get(history.getTaskName());
+        HistoryRow row = new HistoryRow(stored, task == null ? 0 : task.getTaskId());
+        histories = grow(histories, historyId);
+        histories[(int) historyId] = row;
+        historiesByDoneAt.add(row);
+        if (row.taskId != 0) {
+            if (row.taskId >= historiesByTask.length)
+                historiesByTask = Arrays.copyOf(historiesByTask, tasks.length);
+            TreeSet<HistoryRow> ofTask = historiesByTask[(int) row.taskId];
+            if (ofTask == null) {
+                ofTask = new TreeSet<>(BY_DONE_AT);
+                historiesByTask[(int) row.taskId] = ofTask;
+            }
+            ofTask.add(row);
+        }
+    }
+
+    @Override
+    public synchronized void createHistories(List<History> histories) {
+        for (History history : histories)
+            createHistory(history);
+    }
+
+    @Override
+    public synchronized List<History> getHistory() {
+        List<History> all = new ArrayList<>();
+        for (long id = firstHistoryId; id < nextHistoryId; id++) {
+            if (histories[(int) id] != null)
+                all.add(copy(histories[(int) id].history));
+        }
+        return all;
+    }
+
+    @Override
+    public synchronized List<History> getHistoryPage(long beforeId, int limit) {
+        List<History> page = new ArrayList<>();
+        for (long id = Math.min(beforeId, nextHistoryId) - 1; id >= firstHistoryId && page.size() < limit; id--) {
+            if (histories[(int) id] != null)
+                page.add(copy(histories[(int) id].history));
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized List<History> getHistoryBetween(long from, long to) {
+        List<History> between = new ArrayList<>();
+        for (HistoryRow row : doneBetween(historiesByDoneAt, from, to))
+            between.add(copy(row.history));
+        return between;
+    }
+
+    @Override
+    public synchronized List<History> getHistoryByTaskBetween(String taskName, long from, long to) {
+        List<History> between = new ArrayList<>();
+        Task task = tasksByName.get(taskName);
+        TreeSet<HistoryRow> ofTask = task == null ? null : at(historiesByTask, task.getTaskId());
+        if (ofTask == null)
+            return between;
+
+        for (HistoryRow row : doneBetween(ofTask, from, to))
+            between.add(copy(row.history));
+        return between;
+    }
+
+    @Override
+    public synchronized int compactHistory(long before, int batchSize) {
+        SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd");
+        int compacted = 0;
+
+        Iterator<HistoryRow> rows = doneBetween(historiesByDoneAt, Long.MIN_VALUE, before).iterator();
+        while (rows.hasNext() && compacted < batchSize) {
+            HistoryRow row = rows.next();
+            History history = row.history;
+
+            String key = history.getTaskName() + '\n' + dayFormat.format(new Date(history.getDoneAt()));
+            long[] total = dailyHistory.get(key);
+            if (total == null) {
+                total = new long[]{0, history.getDoneAt(), history.getDoneAt()};
+                dailyHistory.put(key, total);
+            }
+            total[0]++;
+            total[1] = Math.min(total[1], history.getDoneAt());
+            total[2] = Math.max(total[2], history.getDoneAt());
+
+            rows.remove();
+            histories[(int) history.getId()] = null;
+            if (row.taskId != 0)
+                historiesByTask[(int) row.taskId].remove(row);
+            compacted++;
+        }
+
+        /** The oldest histories are compacted first, the ids below them need not be looked at again */
+        while (firstHistoryId < nextHistoryId && histories[(int) firstHistoryId] == null)
+            firstHistoryId++;
+        return compacted;
+    }
+
+    /**
+     * @param histories a set ordered by BY_DONE_AT
+     * @return the histories of the set done in [from, to), a live view of it
+     */
+    private static Collection<HistoryRow> doneBetween(TreeSet<HistoryRow> histories, long from, long to) {
+        History fromKey = new History();
+        fromKey.setDoneAt(from);
+        fromKey.setId(Long.MIN_VALUE);
+        History toKey = new History();
+        toKey.setDoneAt(to);
+        toKey.setId(Long.MIN_VALUE);
+
+        return histories.subSet(new HistoryRow(fromKey, 0), true,
+                new HistoryRow(toKey, 0), false);
+    }
+
+    // ############################## snoozes ##################################### //
+
+    @Override
+    public synchronized void createSnooze(Snooze snooze) {
+        if (!tasksByName.containsKey(snooze.getTaskName()))
+            return;
+
+        /** Placed after the snoozes before it in time and name, unless it is stored already */
+        long time = snooze.getFireAt();
+        String taskName = snooze.getTaskName();
+        int lo = 0;
+        int hi = snoozeCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (snoozeTimes[mid] < time || snoozeTimes[mid] == time && snoozeNames[mid].compareTo(taskName) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        if (lo < snoozeCount && snoozeTimes[lo] == time && snoozeNames[lo].equals(taskName))
+            return;
+
+        if (snoozeCount == snoozeTimes.length) {
+            snoozeTimes = Arrays.copyOf(snoozeTimes, snoozeCount * 2);
+            snoozeNames = Arrays.copyOf(snoozeNames, snoozeCount * 2);
+        }
+        System.arraycopy(snoozeTimes, lo, snoozeTimes, lo + 1, snoozeCount - lo);
+        System.arraycopy(snoozeNames, lo, snoozeNames, lo + 1, snoozeCount - lo);
+        snoozeTimes[lo] = time;
+        snoozeNames[lo] = taskName;
+        snoozeCount++;
+    }
+
+    @Override
+    public synchronized List<Snooze> getAllSnoozes() {
+        return snoozes(snoozeCount);
+    }
+
+    @Override
+    public synchronized List<Snooze> takeSnoozesUntil(long until) {
+        int due = 0;
+        while (due < snoozeCount && snoozeTimes[due] <= until)
+            due++;
+        List<Snooze> snoozes = snoozes(due);
+
+        System.arraycopy(snoozeTimes, due, snoozeTimes, 0, snoozeCount - due);
+        System.arraycopy(snoozeNames, due, snoozeNames, 0, snoozeCount - due);
+        Arrays.fill(snoozeNames, snoozeCount - due, snoozeCount, null);
+        snoozeCount -= due;
+        return snoozes;
+    }
+
+    /** @return the first snoozes, soonest first */
+    private List<Snooze> snoozes(int count) {
+        List<Snooze> snoozes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            snoozes.add(new Snooze(snoozeNames[i], snoozeTimes[i]));
+        return snoozes;
+    }
+
+    // ############################## upgrades #################################### //
+
+    /** There are no alarms of older versions in a store that only lives in memory */
+    @Override
+    public List<Integer> takeLegacyRequestCodes() {
+        return new ArrayList<>();
+    }
+
+    // ############################## arrays ###################################### //
+
+    /** @return the row at an id, or null if there is none */
+    private static <T> T at(T[] rows, long id) {
+        return id > 0 && id < rows.length ? rows[(int) id] : null;
+    }
+
+    /** @return the array, or a copy twice as long if it has no room for the id */
+    private static <T> T[] grow(T[] rows, long id) {
+        if (id > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("Id " + id + " does not fit an array");
+        return id < rows.length ? rows : Arrays.copyOf(rows, Math.max(rows.length * 2, (int) id + 1));
+    }
+
+    /** Java has no arrays of a generic type, this one only ever holds TreeSets of rows */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static TreeSet<HistoryRow>[] newHistorySets(int length) {
+        return new TreeSet[length];
+    }
+
+    // ############################## copies ###################################### //
+
+    private static Task copy(Task task) {
+        Task copy = new Task();
+        copy.setTaskName(task.getTaskName());
+        copy.setTaskId(task.getTaskId());
+        return copy;
+    }
+
+    private static Alarm copy(Alarm alarm) {
+        Alarm copy = new Alarm();
+        copy.setId(alarm.getId());
+        copy.setHour(alarm.getHour());
+        copy.setMinute(alarm.getMinute());
+        copy.setTaskName(alarm.getTaskName());
+        copy.setDaysMask(alarm.getDaysMask());
+        return copy;
+    }
+
+    private static History copy(History history) {
+        History copy = new History();
+        copy.setId(history.getId());
+        copy.setTaskName(history.getTaskName());
+        copy.setDateString(history.getDateString());
+        copy.setHourDone(history.getHourDone());
+        copy.setMinuteDone(history.getMinuteDone());
+        copy.setDoneAt(history.getDoneAt());
+        return copy;
+    }
+}
@@ -0,0 +1,41 @@
+package dailyreminderapp.Model;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * One step of a database upgrade, taking the schema from one version to the next.
+ * DbHelper runs the steps in order, each in its own transaction, so an upgrade over
+ * several versions either finishes a step completely or leaves it untouched.
+ *
+ * A step must only use the sql of its own version: the create statements in DbHelper
+ * always describe the newest schema, so they are not used here.
+ */
+abstract class Migration {
+
+    /**
+     * Changes the schema and moves the data of the previous version into it
+     * @param db the database being upgraded, already inside a transaction
+     */
+    abstract void migrate(SQLiteDatabase db);
+
+    /**
+     * Replaces a table by a new definition and copies its rows over in a single
+     * INSERT ... SELECT, for changes SQLite's ALTER TABLE cannot do.
+     * Indexes of the old table are dropped with it and have to be created again afterwards.
+     * @param db the database being upgraded
+     * @param table name of the table to rebuild
+     * @param createTable create statement of the new table, under the same name
+     * @param newColumns the columns of the new table that are filled, comma separated
+     * @param oldColumns the matching columns or expressions of the old table, comma separated
+     */
+    static void rebuildTable(SQLiteDatabase db, String table, String createTable,
+                             String newColumns, String oldColumns) {
+        String oldTable = table + "_old";
+
+        db.execSQL("ALTER TABLE " + table + " RENAME TO " + oldTable);
+        db.execSQL(createTable);
+        db.execSQL("INSERT INTO " + table + "(" + newColumns + ")"
+                + " SELECT " + oldColumns + " FROM " + oldTable);
+        db.execSQL("DROP TABLE " + oldTable);
+    }
+}
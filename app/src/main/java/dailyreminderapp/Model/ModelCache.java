@@ -0,0 +1,292 @@
+package dailyreminderapp.Model;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Process-wide copy of every task, alarm and snooze, so screens read them from memory instead of
+ * querying the database each time they are created. It is loaded from the TaskStore once,
+ * by preload() on a background thread or by the first read, and kept up to date by the
+ * taskBox, which writes every change to the database first and then here.
+ *
+ * The days and times of the alarms are indexed by a ScheduleIndex, which answers the alarms
+ * of a day and the next alarms to go off without sorting or going through every alarm.
+ * Snoozes are kept in the order they go off, so the next one is the first.
+ *
+ * Alarms handed out are the cached objects themselves, callers must not change them.
+ * Histories are not cached, there is no bound on how many there are.
+ */
+class ModelCache {
+
+    private static final ModelCache instance = new ModelCache();
+
+    // The alarms of the next 8 days are looked at for the next to go off
+    private static final long CLOCK_CHANGE_HORIZON = 8 * 24 * 60 * 60 * 1000L;
+
+    private boolean loaded;
+    private final Map<String, Task> tasksByName = new HashMap<>();
+    private final Map<Long, Alarm> alarmsById = new HashMap<>();
+    private final Map<String, List<Alarm>> alarmsByTask = new HashMap<>(); // Sorted by time of day
+    private final ScheduleIndex schedule = new ScheduleIndex();
+    private final TreeMap<Long, Set<String>> snoozesByTime = new TreeMap<>(); // Names of the tasks snoozed to each time
+
+    /** Reads served from memory, and reads that had to load the database first */
+    private int hits;
+    private int misses;
+
+    private ModelCache() {}
+
+    static ModelCache getInstance() {
+        return instance;
+    }
+
+    synchronized int getHits() { return hits; }
+
+    synchronized int getMisses() { return misses; }
+
+    /** Loads the cache if it is not loaded yet, without counting it as a read */
+    synchronized void preload(TaskStore store) {
+        if (!loaded)
+            load(store);
+    }
+
+    /** Forgets everything, the next read loads the database again */
+    synchronized void invalidate() {
+        loaded = false;
+        tasksByName.clear();
+        alarmsById.clear();
+        alarmsByTask.clear();
+        schedule.clear();
+        snoozesByTime.clear();
+    }
+
+    // ############################## reads ###################################### //
+
+    /** @return every task, in a new list the caller may sort */
+    synchronized List<Task> getTasks(TaskStore store) {
+        read(store);
+        return new ArrayList<>(tasksByName.values());
+    }
+
+    /** @return every alarm, in a new list */
+    synchronized List<Alarm> getAllAlarms(TaskStore store) {
+        read(store);
+        return new ArrayList<>(alarmsById.values());
+    }
+
+    /** @return the alarms of a task sorted by time of day, in a new list */
+    synchronized List<Alarm> getAlarmsByTask(TaskStore store, String taskName) {
+        read(store);
+        List<Alarm> alarms = alarmsByTask.get(taskName);
+        return alarms == null ? new ArrayList<Alarm>() : new ArrayList<>(alarms);
+    }
+
+    /**
+     * @param day a Calendar day of the week, Sunday is 1
+     * @return the alarms going off that day sorted by time of day, in a new list
+     */
+    synchronized List<Alarm> getAlarmsByDay(TaskStore store, int day) {
+        read(store);
+        int from = schedule.dayStart(day);
+        int to = schedule.dayStart(day + 1);
+        List<Alarm> alarms = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++)
+            alarms.add(alarmsById.get(schedule.idAt(i)));
+        return alarms;
+    }
+
+    /**
+     * @param after epoch millis
+     * @return the first time after it that an alarm or a snooze goes off and every alarm
+     *         going off then, or null if there are neither
+     */
+    synchronized NextFire getNextFire(TaskStore store, long after) {
+        read(store);
+        NextFire next = getNextAlarms(after);
+
+        /** A snooze going off at the same time as alarms goes off with them */
+        Long snoozedTo = snoozesByTime.higherKey(after);
+        if (snoozedTo != null && (next == null || snoozedTo < next.getTime()))
+            return new NextFire(snoozedTo, new ArrayList<Alarm>());
+        return next;
+    }
+
+    /** @return the alarm, or null if there is no such alarm */
+    synchronized Alarm getAlarmById(TaskStore store, long alarmId) {
+        read(store);
+        return alarmsById.get(alarmId);
+    }
+
+    // ############################## writes ##################################### //
+    // Called after the change is stored. Before the cache is loaded they do nothing, the
+    // change is read from the database with everything else.
+
+    synchronized void putTask(Task task) {
+        if (loaded)
+            tasksByName.put(task.getTaskName(), task);
+    }
+
+    synchronized void putAlarms(List<Alarm> alarms) {
+        if (!loaded)
+            return;
+        for (Alarm alarm : alarms) {
+            removeAlarm(alarm.getId());
+            addAlarm(alarm);
+            schedule.add(alarm);
+        }
+        for (Alarm alarm : alarms)
+            Collections.sort(alarmsByTask.get(alarm.getTaskName()));
+    }
+
+    synchronized void putSnooze(Snooze snooze) {
+        if (!loaded || !tasksByName.containsKey(snooze.getTaskName()))
+            return;
+        addSnooze(snooze);
+    }
+
+    /** Removes the snoozes going off at or before a time */
+    synchronized void removeSnoozesUntil(long until) {
+        if (loaded)
+            snoozesByTime.headMap(until, true).clear();
+    }
+
+    synchronized void removeAlarm(long alarmId) {
+        if (!loaded)
+            return;
+        Alarm alarm = alarmsById.remove(alarmId);
+        if (alarm != null) {
+            List<Alarm> ofTask = alarmsByTask.get(alarm.getTaskName());
+            ofTask.remove(alarm);
+            if (ofTask.isEmpty())
+                alarmsByTask.remove(alarm.getTaskName());
+            schedule.remove(alarm);
+        }
+    }
+
+    /** Removes tasks and their alarms, as deleting them from the database does */
+    synchronized void removeTasks(Collection<String> taskNames) {
+        if (!loaded)
+            return;
+        Set<Long> removed = new HashSet<>();
+        for (String taskName : taskNames) {
+            tasksByName.remove(taskName);
+            List<Alarm> ofTask = alarmsByTask.remove(taskName);
+            if (ofTask != null) {
+                for (Alarm alarm : ofTask) {
+                    alarmsById.remove(alarm.getId());
+                    removed.add(alarm.getId());
+                }
+            }
+        }
+        schedule.removeAll(removed);
+
+        Iterator<Set<String>> snoozed = snoozesByTime.values().iterator();
+        while (snoozed.hasNext()) {
+            Set<String> taskNamesAtTime = snoozed.next();
+            taskNamesAtTime.removeAll(taskNames);
+            if (taskNamesAtTime.isEmpty())
+                snoozed.remove();
+        }
+    }
+
+    // ############################## helpers #################################### //
+
+    /** Counts a read, loading the cache first if needed */
+    private void read(TaskStore store) {
+        if (loaded) {
+            hits++;
+        } else {
+            misses++;
+            load(store);
+        }
+    }
+
+    private void load(TaskStore store) {
+        invalidate();
+        for (Task task : store.getAllTasks())
+            tasksByName.put(task.getTaskName(), task);
+        for (Alarm alarm : store.getAllAlarms())
+            addAlarm(alarm);
+        for (List<Alarm> ofTask : alarmsByTask.values())
+            Collections.sort(ofTask);
+        schedule.build(alarmsById.values());
+        for (Snooze snooze : store.getAllSnoozes())
+            addSnooze(snooze);
+        loaded = true;
+    }
+
+    /**
+     * Adds an alarm to the maps, the caller sorts the list of its task and adds it to the
+     * schedule afterwards
+     */
+    private void addAlarm(Alarm alarm) {
+        alarmsById.put(alarm.getId(), alarm);
+
+        List<Alarm> ofTask = alarmsByTask.get(alarm.getTaskName());
+        if (ofTask == null) {
+            ofTask = new ArrayList<>();
+            alarmsByTask.put(alarm.getTaskName(), ofTask);
+        }
+        ofTask.add(alarm);
+    }
+
+    /** The next alarms after a time from the schedule index, null if there are no alarms */
+    private NextFire getNextAlarms(long after) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(after);
+        int from = schedule.next(ScheduleIndex.minuteOfWeek(calendar));
+        if (from == -1)
+            return null;
+
+        /** A clock change in the coming days can take alarms out of the order of the week */
+        TimeZone zone = calendar.getTimeZone();
+        if (zone.getOffset(after) != zone.getOffset(after + CLOCK_CHANGE_HORIZON))
+            return scanNextFire(after);
+
+        int to = schedule.endOfMinute(from);
+        List<Alarm> due = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++)
+            due.add(alarmsById.get(schedule.idAt(i)));
+        return new NextFire(due.get(0).getNextFireTime(after), due);
+    }
+
+    private void addSnooze(Snooze snooze) {
+        Set<String> taskNames = snoozesByTime.get(snooze.getFireAt());
+        if (taskNames == null) {
+            taskNames = new TreeSet<>();
+            snoozesByTime.put(snooze.getFireAt(), taskNames);
+        }
+        taskNames.add(snooze.getTaskName());
+    }
+
+    /**
+     * Finds the next alarms going through every alarm, for when a clock change is coming and
+     * the minutes of the week are not in the order the alarms go off
+     */
+    private NextFire scanNextFire(long after) {
+        long time = Long.MAX_VALUE;
+        List<Alarm> due = new ArrayList<>();
+        for (Alarm alarm : alarmsById.values()) {
+            long fireTime = alarm.getNextFireTime(after);
+            if (fireTime == -1 || fireTime > time)
+                continue;
+            if (fireTime < time) {
+                time = fireTime;
+                due.clear();
+            }
+            due.add(alarm);
+        }
+        return due.isEmpty() ? null : new NextFire(time, due);
+    }
+}
@@ -0,0 +1,135 @@
+package dailyreminderapp.Model;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells screens what changed in the model, so they update the rows that changed instead of
+ * reading and building everything again. The taskBox publishes a change once it is stored,
+ * from whatever thread stored it. Listeners are called on the main thread, in the order the
+ * changes were made.
+ *
+ * Changes stored through AsyncTaskBox reach the listeners before the callback of the call
+ * that made them. Listeners must be registered and unregistered on the main thread.
+ */
+public class ModelEvents {
+
+    /**
+     * Receives changes on the main thread. It does nothing by default, screens override the
+     * changes they show. Objects handed in may be shared with the ModelCache, listeners must
+     * not change them.
+     */
+    public static class Listener {
+        public void onTaskAdded(Task task) {}
+
+        /** Called after onAlarmRemoved() for each alarm the task had */
+        public void onTaskRemoved(String taskName) {}
+
+        public void onAlarmAdded(Alarm alarm) {}
+
+        public void onAlarmRemoved(Alarm alarm) {}
+
+        public void onHistoryAdded(History history) {}
+
+        /** Too much changed to tell apart, such as by an import: everything shown is read again */
+        public void onReset() {}
+    }
+
+    private static final ModelEvents instance = new ModelEvents();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new ArrayList<>(); // Only used on the main thread
+
+    private ModelEvents() {
+    }
+
+    public static ModelEvents getInstance() {
+        return instance;
+    }
+
+    public void register(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void unregister(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // ############################## publishing ################################## //
+    // Called by the model after a change is stored, on any thread.
+
+    void taskAdded(final Task task) {
+        publish(new Event() {
+            @Override
+            void deliver(Listener listener) {
+                listener.onTaskAdded(task);
+            }
+        });
+    }
+
+    void taskRemoved(final String taskName) {
+        publish(new Event() {
+            @Override
+            void deliver(Listener listener) {
+                listener.onTaskRemoved(taskName);
+            }
+        });
+    }
+
+    void alarmAdded(final Alarm alarm) {
+        publish(new Event() {
+            @Override
+            void deliver(Listener listener) {
+                listener.onAlarmAdded(alarm);
+            }
+        });
+    }
+
+    void alarmRemoved(final Alarm alarm) {
+        publish(new Event() {
+            @Override
+            void deliver(Listener listener) {
+                listener.onAlarmRemoved(alarm);
+            }
+        });
+    }
+
+    void historyAdded(final History history) {
+        publish(new Event() {
+            @Override
+            void deliver(Listener listener) {
+                listener.onHistoryAdded(history);
+            }
+        });
+    }
+
+    void reset() {
+        publish(new Event() {
+            @Override
+            void deliver(Listener listener) {
+                listener.onReset();
+            }
+        });
+    }
+
+    /** A change, handed to every listener on the main thread */
+    private abstract class Event implements Runnable {
+        abstract void deliver(Listener listener);
+
+        @Override
+        public void run() {
+            /** A copy, listeners may unregister themselves or others while they are called */
+            for (Listener listener : new ArrayList<>(listeners)) {
+                if (listeners.contains(listener))
+                    deliver(listener);
+            }
+        }
+    }
+
+    private void publish(Event event) {
+        mainHandler.post(event);
+    }
+}
@@ -0,0 +1,21 @@
+package dailyreminderapp.Model;
+
+import java.util.List;
+
+/**
+ * The next time alarms or snoozes go off, and the alarms going off then. There may be none
+ * if only snoozes go off then, the snoozes themselves are taken with TaskBox.takeSnoozes.
+ */
+public class NextFire {
+    private final long time; // Epoch millis
+    private final List<Alarm> alarms;
+
+    public NextFire(long time, List<Alarm> alarms) {
+        this.time = time;
+        this.alarms = alarms;
+    }
+
+    public long getTime() { return time; }
+
+    public List<Alarm> getAlarms() { return alarms; }
+}
@@ -0,0 +1,216 @@
+package dailyreminderapp.Model;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The week of every alarm, as the minute of the week (0 to 10079, Sunday 00:00 is 0) of each
+ * day it goes off. An alarm checked on three days has three entries. The entries are kept in
+ * two arrays sorted by minute and then alarm id, so finding the alarms of a day, of a range
+ * of the week or the next ones to go off is a binary search and reading the arrays in order,
+ * which allocates nothing.
+ *
+ * Not thread safe, the ModelCache holding it synchronizes.
+ */
+class ScheduleIndex {
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+    static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    private int[] minutes = new int[16];
+    private long[] ids = new long[16];
+    private int size;
+
+    /**
+     * @param day a Calendar day of the week, Sunday is 1
+     * @return the minute of the week
+     */
+    static int minuteOfWeek(int day, int hour, int minute) {
+        return (day - 1) * MINUTES_PER_DAY + hour * 60 + minute;
+    }
+
+    /** @return the minute of the week of the time the calendar is set to */
+    static int minuteOfWeek(Calendar calendar) {
+        return minuteOfWeek(calendar.get(Calendar.DAY_OF_WEEK),
+                calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE));
+    }
+
+    int size() { return size; }
+
+    int minuteAt(int index) { return minutes[index]; }
+
+    long idAt(int index) { return ids[index]; }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Replaces the entries with those of the alarms. Sorting by id and then placing the
+     * entries of each minute in a counting pass keeps the ids of a minute in order without
+     * comparing entries.
+     */
+    void build(Collection<Alarm> alarms) {
+        List<Alarm> byId = new ArrayList<>(alarms);
+        Collections.sort(byId, new Comparator<Alarm>() {
+            @Override
+            public int compare(Alarm a, Alarm b) {
+                return a.getId() < b.getId() ? -1 : (a.getId() == b.getId() ? 0 : 1);
+            }
+        });
+
+        /** Entries of each minute, then where the entries of each minute start */
+        int[] starts = new int[MINUTES_PER_WEEK + 1];
+        for (Alarm alarm : byId) {
+            for (int day = 1; day < 8; day++) {
+                if ((alarm.getDaysMask() & Alarm.dayBit(day)) != 0)
+                    starts[minuteOfWeek(day, alarm.getHour(), alarm.getMinute()) + 1]++;
+            }
+        }
+        for (int m = 0; m < MINUTES_PER_WEEK; m++)
+            starts[m + 1] += starts[m];
+
+        size = starts[MINUTES_PER_WEEK];
+        minutes = new int[Math.max(16, size)];
+        ids = new long[minutes.length];
+        for (Alarm alarm : byId) {
+            for (int day = 1; day < 8; day++) {
+                if ((alarm.getDaysMask() & Alarm.dayBit(day)) != 0) {
+                    int m = minuteOfWeek(day, alarm.getHour(), alarm.getMinute());
+                    int index = starts[m]++;
+                    minutes[index] = m;
+                    ids[index] = alarm.getId();
+                }
+            }
+        }
+    }
+
+    /** Adds an entry for each day the alarm goes off */
+    void add(Alarm alarm) {
+        for (int day = 1; day < 8; day++) {
+            if ((alarm.getDaysMask() & Alarm.dayBit(day)) == 0)
+                continue;
+            int m = minuteOfWeek(day, alarm.getHour(), alarm.getMinute());
+            int index = indexOf(m, alarm.getId());
+            if (index >= 0)
+                continue;
+            index = -index - 1;
+
+            if (size == minutes.length) {
+                int[] moreMinutes = new int[size * 2];
+                long[] moreIds = new long[size * 2];
+                System.arraycopy(minutes, 0, moreMinutes, 0, size);
+                System.arraycopy(ids, 0, moreIds, 0, size);
+                minutes = moreMinutes;
+                ids = moreIds;
+            }
+            System.arraycopy(minutes, index, minutes, index + 1, size - index);
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            minutes[index] = m;
+            ids[index] = alarm.getId();
+            size++;
+        }
+    }
+
+    /**
+     * Removes the entries of an alarm. The alarm must have the time and days it was added
+     * with, which is why cached alarms must not be changed.
+     */
+    void remove(Alarm alarm) {
+        for (int day = 1; day < 8; day++) {
+            if ((alarm.getDaysMask() & Alarm.dayBit(day)) == 0)
+                continue;
+            int index = indexOf(minuteOfWeek(day, alarm.getHour(), alarm.getMinute()), alarm.getId());
+            if (index < 0)
+                continue;
+            System.arraycopy(minutes, index + 1, minutes, index, size - index - 1);
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+        }
+    }
+
+    /** Removes the entries of many alarms in one pass */
+    void removeAll(Set<Long> alarmIds) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!alarmIds.contains(ids[i])) {
+                minutes[kept] = minutes[i];
+                ids[kept] = ids[i];
+                kept++;
+            }
+        }
+        size = kept;
+    }
+
+    // ############################## queries #################################### //
+
+    /**
+     * The entries from one minute of the week up to another, not included, are those from
+     * lowerBound(from) to lowerBound(to). If from is after to the range goes past the end of
+     * the week: lowerBound(from) to size(), then 0 to lowerBound(to).
+     * @return the index of the first entry at or after a minute of the week, size() if none
+     */
+    int lowerBound(int minuteOfWeek) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (minutes[mid] < minuteOfWeek)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /** @return the index of the first entry after a minute of the week, size() if none */
+    int upperBound(int minuteOfWeek) {
+        return lowerBound(minuteOfWeek + 1);
+    }
+
+    /**
+     * @param day a Calendar day of the week, Sunday is 1
+     * @return the index of the first entry of the day; the entries of the day, sorted by time
+     *         of day, end at dayStart(day + 1)
+     */
+    int dayStart(int day) {
+        return lowerBound((day - 1) * MINUTES_PER_DAY);
+    }
+
+    /**
+     * @return the index of the first entry after a minute of the week, going on from the
+     *         start of the week past its end, or -1 if there are no entries
+     */
+    int next(int minuteOfWeek) {
+        if (size == 0)
+            return -1;
+        int index = upperBound(minuteOfWeek);
+        return index == size ? 0 : index;
+    }
+
+    /** @return the index after the last entry at the same minute as the entry at an index */
+    int endOfMinute(int index) {
+        return upperBound(minutes[index]);
+    }
+
+    /** Binary search by minute and then id, as Arrays.binarySearch returns it */
+    private int indexOf(int minuteOfWeek, long alarmId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (minutes[mid] < minuteOfWeek || (minutes[mid] == minuteOfWeek && ids[mid] < alarmId))
+                low = mid + 1;
+            else if (minutes[mid] == minuteOfWeek && ids[mid] == alarmId)
+                return mid;
+            else
+                high = mid - 1;
+        }
+        return -(low + 1);
+    }
+}
@@ -0,0 +1,26 @@
+package dailyreminderapp.Model;
+
+/**
+ * A task the user put off from an alert, to be alerted of again at a later time.
+ * Snoozes are kept until they go off, so they are not lost when the app or the device
+ * restarts. A task snoozed to the same minute twice has a single snooze.
+ */
+public class Snooze {
+    private String taskName;
+    private long fireAt; // Epoch millis, always a whole minute
+
+    public Snooze() {}
+
+    public Snooze(String taskName, long fireAt) {
+        this.taskName = taskName;
+        this.fireAt = fireAt;
+    }
+
+    public String getTaskName() { return taskName; }
+
+    public void setTaskName(String taskName) { this.taskName = taskName; }
+
+    public long getFireAt() { return fireAt; }
+
+    public void setFireAt(long fireAt) { this.fireAt = fireAt; }
+}
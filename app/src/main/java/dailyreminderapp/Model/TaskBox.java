@@ -1,7 +1,8 @@
 package dailyreminderapp.Model;
 
 import android.content.Context;
-import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -9,108 +10,258 @@ import java.util.List;
  * Created by Pasa Ibrahim, M Bayu Devara, Solihin.
  * Is used to retrieve tasks and alarms by other classes.
  * Has access to and can read and write to the database.
+ * All calls go through a TaskStore: the shared DbHelper, which stays open so nothing is
+ * closed here, unless another store is set with setStore().
+ * Tasks and alarms are read from the ModelCache. Every change is stored in the store
+ * first, then written through to the cache and published to the screens by ModelEvents.
  */
 public class TaskBox {
-    private DbHelper db;
-    private static List<Long> tempIds; // Ids of the alarms to be deleted or edited
-    private static String tempName; // Ids of the alarms to be deleted or edited
+    private static long tempId; // Id of the alarm to be deleted or edited
+    private static String tempName; // Name of the task of the alarm to be deleted or edited
 
-    public List<Long> getTempIds() { return Collections.unmodifiableList(tempIds); }
+    private static final int COMPACTION_BATCH_SIZE = 500; // Histories per compaction transaction
+    private static final long MINUTE = 60000; // Millis
 
-    public void setTempIds(List<Long> tempIds) { this.tempIds = tempIds; }
+    private static TaskStore store; // Set by setStore(), otherwise the DbHelper of the context is used
+
+    /**
+     * Makes every taskBox use a store other than the database, such as an InMemoryTaskStore
+     * to run the model without a device. The context arguments are not used then.
+     * @param taskStore the store, or null to go back to the database
+     */
+    public static synchronized void setStore(TaskStore taskStore) {
+        store = taskStore;
+        ModelCache.getInstance().invalidate();
+        ModelEvents.getInstance().reset();
+    }
+
+    private static synchronized TaskStore store(Context c) {
+        return store != null ? store : DbHelper.getInstance(c);
+    }
+
+    public long getTempId() { return tempId; }
+
+    public void setTempId(long tempId) { this.tempId = tempId; }
 
     public String getTempName() { return tempName; }
 
     public void setTempName(String tempName) { this.tempName = tempName; }
 
+    /** Loads the tasks and alarms into the cache on a background thread, if not loaded yet */
+    public void preload(Context c) {
+        final TaskStore taskStore = store(c);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ModelCache.getInstance().preload(taskStore);
+            }
+        }, "TaskBox preload").start();
+    }
+
+    /** @return how many reads of tasks and alarms were served from memory */
+    public int getCacheHits() { return ModelCache.getInstance().getHits(); }
+
+    /** @return how many reads of tasks and alarms had to load the database first */
+    public int getCacheMisses() { return ModelCache.getInstance().getMisses(); }
+
     public List<Task> getTasks(Context c) {
-        db = new DbHelper(c);
-        List<Task> allTasks = db.getAllTasks();
-        db.close();
-        return allTasks;
+        return ModelCache.getInstance().getTasks(store(c));
     }
 
     public long addTask(Context c, Task task) {
-        db = new DbHelper(c);
-        long taskId = db.createTask(task);
+        long taskId = store(c).createTask(task);
         task.setTaskId(taskId);
-        db.close();
+        if (taskId != -1) {
+            ModelCache.getInstance().putTask(task);
+            ModelEvents.getInstance().taskAdded(task);
+        }
         return taskId;
     }
 
     public Task getTaskByName(Context c, String taskName){
-        db = new DbHelper(c);
-        Task wantedTask = db.getTaskByName(taskName);
-        db.close();
-        return wantedTask;
+        return store(c).getTaskByName(taskName);
     }
 
+    /** Stores the alarm and sets its id, which its alarmManager request codes depend on */
     public void addAlarm(Context c, Alarm alarm, Task task){
-        db = new DbHelper(c);
-        db.createAlarm(alarm, task.getTaskId());
-        db.close();
+        store(c).createAlarm(alarm, task.getTaskId());
+        ModelCache.getInstance().putAlarms(Collections.singletonList(alarm));
+        ModelEvents.getInstance().alarmAdded(alarm);
+    }
+
+    /** Stores many alarms of one task in one transaction and sets their ids */
+    public void addAlarms(Context c, Task task, List<Alarm> alarms){
+        store(c).createAlarms(alarms, task.getTaskId());
+        ModelCache.getInstance().putAlarms(alarms);
+        for (Alarm alarm : alarms)
+            ModelEvents.getInstance().alarmAdded(alarm);
+    }
+
+    /**
+     * Stores an alarm for the task of its name, creating the task if there is none yet
+     * @param alarm an alarm with its task name set, its id is set to the new id
+     */
+    public void saveAlarm(Context c, Alarm alarm) {
+        /** Looked up first, as a failed insert of the name would be logged as an error */
+        Task task = new Task();
+        task.setTaskName(alarm.getTaskName());
+        long taskId = store(c).getTaskId(alarm.getTaskName());
+        if (taskId == -1)
+            addTask(c, task);
+        else
+            task.setTaskId(taskId);
+        task.addAlarm(alarm);
+        addAlarm(c, alarm, task);
+    }
+
+    /** Deletes an alarm, and its task if the task has no other alarm left */
+    public void deleteAlarmAndEmptyTask(Context c, Alarm alarm) {
+        deleteAlarm(c, alarm.getId());
+        if (getAlarmByTask(c, alarm.getTaskName()).isEmpty())
+            deleteTask(c, alarm.getTaskName());
+    }
+
+    /** The alarms going off on a day, sorted by time of day */
+    public List<Alarm> getAlarms(Context c, int dayOfWeek) {
+        return ModelCache.getInstance().getAlarmsByDay(store(c), dayOfWeek);
+    }
+
+    public List<Alarm> getAlarmByTask (Context c, String taskName) {
+        return ModelCache.getInstance().getAlarmsByTask(store(c), taskName);
+    }
+
+    public List<Alarm> getAllAlarms(Context c) {
+        return ModelCache.getInstance().getAllAlarms(store(c));
+    }
+
+    /**
+     * @param after epoch millis
+     * @return the first time after it that an alarm or a snooze goes off and every alarm
+     *         going off then, or null if there are neither
+     */
+    public NextFire getNextFire(Context c, long after) {
+        return ModelCache.getInstance().getNextFire(store(c), after);
     }
 
-    public List<Alarm> getAlarms(Context c, int dayOfWeek) throws URISyntaxException {
-        db = new DbHelper(c);
-        List<Alarm> daysAlarms= db.getAlarmsByDay(dayOfWeek);
-        db.close();
-        Collections.sort(daysAlarms);
-        return daysAlarms;
+    /**
+     * Snoozes a task. The time is rounded up to a whole minute, so snoozes and alarms of the
+     * same minute go off together and snoozing a task twice in a minute keeps one snooze.
+     * @param fireAt epoch millis
+     */
+    public void snooze(Context c, String taskName, long fireAt) {
+        Snooze snooze = new Snooze(taskName, (fireAt + MINUTE - 1) / MINUTE * MINUTE);
+        store(c).createSnooze(snooze);
+        ModelCache.getInstance().putSnooze(snooze);
     }
 
-    public List<Alarm> getAlarmByTask (Context c, String taskName) throws URISyntaxException {
-        db = new DbHelper(c);
-        List<Alarm> tasksAlarms = db.getAllAlarmsByTask(taskName);
-        db.close();
-        return tasksAlarms;
+    /**
+     * Deletes the snoozes going off at or before a time
+     * @param until epoch millis
+     * @return the snoozes deleted, soonest first
+     */
+    public List<Snooze> takeSnoozes(Context c, long until) {
+        List<Snooze> snoozes = store(c).takeSnoozesUntil(until);
+        ModelCache.getInstance().removeSnoozesUntil(until);
+        return snoozes;
     }
 
+    /** Looks the name up in the task id cache, or the unique name index on a miss */
     public boolean taskExist(Context c, String taskName) {
-        db = new DbHelper(c);
-        for(Task task: this.getTasks(c)) {
-            if(task.getTaskName().equals(taskName))
-                return true;
-        }
-        return false;
+        return store(c).getTaskId(taskName) != -1;
+    }
+
+    public void deleteTask(Context c, String taskName) {
+        deleteTasks(c, Collections.singletonList(taskName));
     }
 
-    public void deleteTask(Context c, String taskName) throws URISyntaxException {
-        db = new DbHelper(c);
-        db.deleteTask(taskName);
-        db.close();
+    /** Deletes many tasks and their alarms in one transaction */
+    public void deleteTasks(Context c, Collection<String> taskNames) {
+        List<Alarm> removed = new ArrayList<>();
+        for (String taskName : taskNames)
+            removed.addAll(getAlarmByTask(c, taskName));
+
+        store(c).deleteTasks(taskNames);
+        ModelCache.getInstance().removeTasks(taskNames);
+
+        for (Alarm alarm : removed)
+            ModelEvents.getInstance().alarmRemoved(alarm);
+        for (String taskName : taskNames)
+            ModelEvents.getInstance().taskRemoved(taskName);
     }
 
     public void deleteAlarm(Context c, long alarmId) {
-        db = new DbHelper(c);
-        db.deleteAlarm(alarmId);
-        db.close();
+        Alarm alarm = getAlarmById(c, alarmId);
+        store(c).deleteAlarm(alarmId);
+        ModelCache.getInstance().removeAlarm(alarmId);
+        if (alarm != null)
+            ModelEvents.getInstance().alarmRemoved(alarm);
     }
 
     public void addToHistory(Context c, History h){
-        db = new DbHelper(c);
-        db.createHistory(h);
-        db.close();
+        store(c).createHistory(h);
+        ModelEvents.getInstance().historyAdded(h);
+    }
+
+    /** Stores histories in one write, oldest first so screens show the newest on top */
+    public void addToHistory(Context c, List<History> histories) {
+        store(c).createHistories(histories);
+        for (History h : histories)
+            ModelEvents.getInstance().historyAdded(h);
     }
 
     public List<History> getHistory (Context c){
-        db = new DbHelper(c);
-        List<History> history = db.getHistory();
-        db.close();
-        return history;
+        return store(c).getHistory();
+    }
+
+    /**
+     * One page of histories, newest first. Pass Long.MAX_VALUE for the first page and the
+     * id of the last history of a page for the page after it.
+     */
+    public List<History> getHistoryPage (Context c, long beforeId, int limit){
+        return store(c).getHistoryPage(beforeId, limit);
+    }
+
+    /**
+     * Histories done in a time range, oldest first
+     * @param from start of the range in epoch millis, included
+     * @param to end of the range in epoch millis, excluded
+     */
+    public List<History> getHistory (Context c, long from, long to){
+        return store(c).getHistoryBetween(from, to);
+    }
+
+    /** Histories of one task done in a time range, oldest first, see getHistory(c, from, to) */
+    public List<History> getHistoryByTask (Context c, String taskName, long from, long to){
+        return store(c).getHistoryByTaskBetween(taskName, from, to);
+    }
+
+    /**
+     * Rolls every history done before a time up into daily totals, one transaction of at
+     * most COMPACTION_BATCH_SIZE histories at a time. Each batch is kept once committed, so
+     * if this is interrupted the next call carries on where it stopped.
+     * @param before epoch millis, only histories done before it are compacted
+     * @return the number of histories compacted
+     */
+    public int compactHistory(Context c, long before) {
+        TaskStore taskStore = store(c);
+        int total = 0;
+        int compacted;
+        do {
+            compacted = taskStore.compactHistory(before, COMPACTION_BATCH_SIZE);
+            total += compacted;
+        } while (compacted == COMPACTION_BATCH_SIZE);
+        return total;
     }
 
-    public Alarm getAlarmById(Context c, long alarm_id) throws URISyntaxException{
-        db = new DbHelper(c);
-        Alarm alarm = db.getAlarmById(alarm_id);
-        db.close();
-        return alarm;
+    public Alarm getAlarmById(Context c, long alarm_id) {
+        return ModelCache.getInstance().getAlarmById(store(c), alarm_id);
     }
 
-    public int getDayOfWeek(Context c, long alarm_id) throws URISyntaxException{
-        db = new DbHelper(c);
-        int getDayOfWeek = db.getDayOfWeek(alarm_id);
-        db.close();
-        return getDayOfWeek;
+    /**
+     * Request codes of alarmManager alarms set by versions of the app that stored one
+     * row per day. Each code is returned only once, the caller has to cancel them.
+     */
+    public List<Integer> takeLegacyRequestCodes(Context c) {
+        return store(c).takeLegacyRequestCodes();
     }
 }
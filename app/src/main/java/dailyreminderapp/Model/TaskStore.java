@@ -0,0 +1,129 @@
+package dailyreminderapp.Model;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Storage behind the taskBox: everything it reads and writes goes through these methods.
+ * DbHelper stores in SQLite, InMemoryTaskStore in plain Java collections so the model can
+ * be run and measured without a device.
+ *
+ * Objects handed in are copied, objects handed out are the caller's to change.
+ * TaskStoreConformanceTest checks that every implementation behaves the same.
+ */
+public interface TaskStore {
+
+    // ############################## tasks ####################################### //
+
+    /**
+     * @param task a model task object
+     * @return the new task's id, or -1 if a task of that name exists already
+     */
+    long createTask(Task task);
+
+    /** @return every task, in the order they were created */
+    List<Task> getAllTasks();
+
+    /** @return the task, or an empty task (no name, id 0) if there is no such task */
+    Task getTaskByName(String taskName);
+
+    /** @return the task's id, or -1 if there is no such task */
+    long getTaskId(String taskName);
+
+    /** Deletes a task and its alarms and snoozes, its histories are kept */
+    void deleteTask(String taskName);
+
+    /** Deletes tasks and their alarms and snoozes, their histories are kept */
+    void deleteTasks(Collection<String> taskNames);
+
+    // ############################## alarms ###################################### //
+
+    /**
+     * @param alarm a model alarm object, its id is set to the new id
+     * @param task_id the id of an existing task the alarm is for
+     * @return the new alarm's id
+     */
+    long createAlarm(Alarm alarm, long task_id);
+
+    /**
+     * @param alarms model alarm objects, their ids are set to the new ids
+     * @param task_id the id of an existing task the alarms are for
+     */
+    void createAlarms(List<Alarm> alarms, long task_id);
+
+    /** @return every alarm, in the order they were created */
+    List<Alarm> getAllAlarms();
+
+    /** @return the alarms of a task sorted by time of day */
+    List<Alarm> getAllAlarmsByTask(String taskName);
+
+    /**
+     * @param day a Calendar day of the week, Sunday is 1
+     * @return the alarms going off that day, in no particular order
+     */
+    List<Alarm> getAlarmsByDay(int day);
+
+    /** @return the alarm, or null if there is no such alarm */
+    Alarm getAlarmById(long alarm_id);
+
+    void deleteAlarm(long alarmId);
+
+    // ############################## histories ################################### //
+
+    /** @param history a history model object, linked to the task of its name if there is one */
+    void createHistory(History history);
+
+    /**
+     * Stores histories all together or none of them
+     * @param histories history model objects, each linked to the task of its name if there is one
+     */
+    void createHistories(List<History> histories);
+
+    /** @return every history, in the order they were created */
+    List<History> getHistory();
+
+    /**
+     * @param beforeId only histories with a smaller id are returned, Long.MAX_VALUE for
+     *                 the first page, the id of the last history of a page for the next one
+     * @param limit the most histories to return
+     * @return a page of histories, newest first
+     */
+    List<History> getHistoryPage(long beforeId, int limit);
+
+    /** @return the histories done in [from, to), oldest first */
+    List<History> getHistoryBetween(long from, long to);
+
+    /** @return the histories of a task done in [from, to), oldest first */
+    List<History> getHistoryByTaskBetween(String taskName, long from, long to);
+
+    /**
+     * Rolls the oldest histories done before a time up into daily totals and deletes them
+     * @param before epoch millis, only histories done before it are compacted
+     * @param batchSize the most histories compacted by this call
+     * @return the number of histories compacted, below batchSize once none are left
+     */
+    int compactHistory(long before, int batchSize);
+
+    // ############################## snoozes ##################################### //
+
+    /**
+     * Stores a snooze. A snooze of the same task at the same time is stored only once, and
+     * nothing is stored if there is no task of that name.
+     */
+    void createSnooze(Snooze snooze);
+
+    /** @return every snooze, soonest first */
+    List<Snooze> getAllSnoozes();
+
+    /**
+     * Deletes the snoozes going off at or before a time
+     * @param until epoch millis
+     * @return the snoozes deleted, soonest first
+     */
+    List<Snooze> takeSnoozesUntil(long until);
+
+    // ############################## upgrades #################################### //
+
+    /** @return request codes of alarmManager alarms set by older versions, each only once */
+    List<Integer> takeLegacyRequestCodes();
+}
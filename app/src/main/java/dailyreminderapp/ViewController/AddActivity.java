@@ -1,20 +1,13 @@
 package dailyreminderapp.ViewController;
 
-import dailyreminderapp.Model.TaskBox;
+import dailyreminderapp.Model.AsyncTaskBox;
 import teamqitalach.taskapp.R;
 
 import dailyreminderapp.Model.Alarm;
-import dailyreminderapp.Model.Task;
 
-import java.net.URISyntaxException;
 import java.util.Calendar;
-import java.util.LinkedList;
-import java.util.List;
 
-import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.app.TimePickerDialog;
-import android.content.Intent;
 import android.graphics.Typeface;
 import android.os.Bundle;
 import android.support.v4.app.NavUtils;
@@ -38,13 +31,11 @@ import android.widget.Toast;
  * This activity handles the view and controller of the add page, where the user can add an alarm
  */
 public class AddActivity extends ActionBarActivity {
-    private AlarmManager alarmManager;
-    private PendingIntent operation;
     private boolean dayOfWeekList[] = new boolean[7];
 
     int hour, minute;
     TextView timeLabel;
-    TaskBox taskBox = new TaskBox();
+    AsyncTaskBox taskBox = new AsyncTaskBox();
 
     // Time picker dialog that pops up when the user presses the time string
     // This method specifies the hour and minute of the time picker before the user
@@ -93,101 +84,45 @@ public class AddActivity extends ActionBarActivity {
             @Override
             public void onClick(View v) {
                 int checkBoxCounter = 0;
+                for (boolean day : dayOfWeekList) {
+                    if (day)
+                        checkBoxCounter++;
+                }
 
                 EditText editText = (EditText) findViewById(R.id.task_name);
                 String task_name = editText.getText().toString();
 
-                /** Updating model */
-                Alarm alarm = new Alarm();
-
-                /** If Task does not already exist */
-                if (!taskBox.taskExist(getApplicationContext(), task_name)) {
-                    Task task = new Task();
-                    task.setTaskName(task_name);
-                    alarm.setHour(hour);
-                    alarm.setMinute(minute);
-                    alarm.setTaskName(task_name);
-                    alarm.setDayOfWeek(dayOfWeekList);
-                    task.addAlarm(alarm);
-                    long taskId = taskBox.addTask(getApplicationContext() ,task);
-                    task.setTaskId(taskId);
-                    taskBox.addAlarm(getApplicationContext(), alarm, task);
-                } else { // If Task already exists
-                    Task task = taskBox.getTaskByName(getApplicationContext(), task_name);
-                    alarm.setHour(hour);
-                    alarm.setMinute(minute);
-                    alarm.setTaskName(task_name);
-                    alarm.setDayOfWeek(dayOfWeekList);
-                    task.addAlarm(alarm);
-                    taskBox.addAlarm(getApplicationContext(), alarm, task);
-                }
-                List<Long> ids = new LinkedList<Long>();
-                try {
-                    List<Alarm> alarms = taskBox.getAlarmByTask(getApplicationContext(), task_name);
-                    for(Alarm tempAlarm: alarms) {
-                        if(tempAlarm.getHour() == hour && tempAlarm.getMinute() == minute) {
-                            ids = tempAlarm.getIds();
-                            break;
-                        }
-                    }
-                } catch (URISyntaxException e) {
-                    e.printStackTrace();
-                }
-
-                for(int i=0; i<7; i++) {
-                    if (dayOfWeekList[i] && task_name.length() != 0) {
-
-                        int dayOfWeek = i+1;
-
-                        long _id = ids.get(checkBoxCounter);
-                        int id = (int) _id;
-                        checkBoxCounter++;
-
-                        /** This intent invokes the activity AlertActivity, which in turn opens the AlertAlarm window */
-                        Intent intent = new Intent(getBaseContext(), AlertActivity.class);
-                        intent.putExtra("task_name", task_name);
-
-                        operation = PendingIntent.getActivity(getBaseContext(), id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-
-                        /** Getting a reference to the System Service ALARM_SERVICE */
-                        alarmManager = (AlarmManager) getBaseContext().getSystemService(ALARM_SERVICE);
-
-                        /** Creating a calendar object corresponding to the date and time set by the user */
-                        Calendar calendar = Calendar.getInstance();
-
-                        calendar.set(Calendar.HOUR_OF_DAY, hour);
-                        calendar.set(Calendar.MINUTE, minute);
-                        calendar.set(Calendar.SECOND, 0);
-                        calendar.set(Calendar.MILLISECOND, 0);
-                        calendar.set(Calendar.DAY_OF_WEEK, dayOfWeek);
-
-                        /** Converting the date and time in to milliseconds elapsed since epoch */
-                        long alarm_time = calendar.getTimeInMillis();
-
-                        if (calendar.before(Calendar.getInstance()))
-                            alarm_time += AlarmManager.INTERVAL_DAY * 7;
-
-                        alarmManager.setRepeating(AlarmManager.RTC_WAKEUP, alarm_time,
-                                alarmManager.INTERVAL_DAY * 7, operation);
-                    }
-                }
                 /** Input form is not completely filled out */
-                if(checkBoxCounter == 0 || task_name.length() == 0)
+                if(checkBoxCounter == 0 || task_name.length() == 0) {
                     Toast.makeText(getBaseContext(), "Please input a task name or check at least one day!", Toast.LENGTH_SHORT).show();
-                else { // Input form is completely filled out
-                    Toast.makeText(getBaseContext(), "Alarm for " + task_name + " is set successfully", Toast.LENGTH_SHORT).show();
-                    Intent returnHome = new Intent(getBaseContext(), MainActivity.class);
-                    startActivity(returnHome);
-                    finish();
+                    return;
                 }
+
+                /** Updating model */
+                Alarm alarm = new Alarm();
+                alarm.setHour(hour);
+                alarm.setMinute(minute);
+                alarm.setTaskName(task_name);
+                alarm.setDayOfWeek(dayOfWeekList);
+
+                /** Storing it in the background, its task is created if it does not exist yet */
+                v.setEnabled(false);
+                taskBox.saveAlarm(getApplicationContext(), alarm, new AsyncTaskBox.Callback<Alarm>() {
+                    @Override
+                    public void onResult(Alarm saved) {
+                        /** The new alarm may be the next one to go off */
+                        AlarmScheduler.reschedule(getApplicationContext());
+
+                        Toast.makeText(getApplicationContext(), "Alarm for " + saved.getTaskName() + " is set successfully", Toast.LENGTH_SHORT).show();
+                        finish();
+                    }
+                });
             }
         };
 
         OnClickListener cancelClickListener = new OnClickListener() {
             @Override
             public void onClick(View v) {
-                Intent returnHome = new Intent(getBaseContext(), MainActivity.class);
-                startActivity(returnHome);
                 finish();
             }
         };
@@ -276,8 +211,6 @@ public class AddActivity extends ActionBarActivity {
             NavUtils.navigateUpFromSameTask(this);
             return true;
         }
-        Intent returnHome = new Intent(getBaseContext(), MainActivity.class);
-        startActivity(returnHome);
         finish();
         return super.onOptionsItemSelected(item);
     }
@@ -298,11 +231,4 @@ public class AddActivity extends ActionBarActivity {
             minuteWithZero = "" + minute;
         return nonMilitaryHour + ":" + minuteWithZero + am_pm;
     }
-
-    @Override
-    public void onBackPressed() {
-        Intent returnHome = new Intent(getBaseContext(), MainActivity.class);
-        startActivity(returnHome);
-        finish();
-        }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package dailyreminderapp.ViewController;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import dailyreminderapp.Model.AsyncTaskBox;
+
+/**
+ * Woken by the alarmManager alarm AlarmScheduler sets. Opens one AlertActivity for all the
+ * tasks with an alarm or a snooze due, or shows them as notifications if the user chose
+ * NotificationAlerts, and sets the alarmManager alarm for the next ones. The model is read in
+ * the background while the broadcast is kept going, which keeps the device awake until the
+ * alert is shown. The broadcast is finished even if reading the model fails, after trying to
+ * set the alarmManager alarm again, so a failure does not leave the next alarm unset.
+ */
+public class AlarmReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "AlarmReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final long wokeAt = AlertTiming.now();
+        final Context appContext = context.getApplicationContext();
+        final long fireTime = intent.getLongExtra(AlarmScheduler.EXTRA_FIRE_TIME, System.currentTimeMillis());
+        final PendingResult result = goAsync();
+
+        new AsyncTaskBox().submit(new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                try {
+                    return AlarmScheduler.fire(appContext, fireTime);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Could not read the alarms due at " + fireTime, e);
+                    scheduleAfterError(appContext, Math.max(fireTime, System.currentTimeMillis()));
+                    return Collections.emptyList();
+                }
+            }
+        }, new AsyncTaskBox.Callback<List<String>>() {
+            @Override
+            public void onResult(List<String> taskNames) {
+                try {
+                    if (!taskNames.isEmpty())
+                        showAlerts(appContext, taskNames, wokeAt);
+                } finally {
+                    result.finish();
+                }
+            }
+        });
+    }
+
+    /**
+     * Tries once more to set the alarmManager alarm for the next alarm, after the model could
+     * not be read, so the alarms after this one still go off. Must not be called on the main
+     * thread.
+     */
+    static void scheduleAfterError(Context context, long after) {
+        try {
+            AlarmScheduler.schedule(context, after);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Could not set the alarm after " + after, e);
+        }
+    }
+
+    /**
+     * Shows the tasks due the way the user chose. Must be called on the main thread.
+     * @param wokeAt from AlertTiming.now(), when the app was woken for them
+     */
+    static void showAlerts(Context context, List<String> taskNames, long wokeAt) {
+        if (NotificationAlerts.isEnabled(context)) {
+            NotificationAlerts.show(context, taskNames);
+            AlertTiming.logIdle(AlertTiming.PATH_NOTIFICATION, wokeAt, taskNames.size());
+        } else {
+            AlertActivity.open(context, taskNames, wokeAt);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package dailyreminderapp.ViewController;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import dailyreminderapp.Model.Alarm;
+import dailyreminderapp.Model.AsyncTaskBox;
+import dailyreminderapp.Model.NextFire;
+import dailyreminderapp.Model.Snooze;
+import dailyreminderapp.Model.TaskBox;
+
+/**
+ * Sets the alarmManager alarm that makes the model alarms go off. The whole schedule stays in
+ * the model; only the next time any alarm goes off is set, as one alarmManager alarm that
+ * wakes AlarmReceiver. When it goes off the receiver shows the alarms due and sets the one
+ * after. However many alarms and days there are, the app holds a single alarmManager alarm.
+ * Snoozes are stored in the model as well and go off through the same alarmManager alarm.
+ *
+ * Every change to the alarms has to be followed by reschedule(). The time the alarmManager
+ * alarm is set for is kept, and it is only set again when the next time changes. The
+ * alarmManager forgets its alarms when the device restarts, and clock and timezone changes
+ * move the next time; RescheduleReceiver schedules again for those.
+ */
+public class AlarmScheduler {
+
+    /** Intent extra of AlarmReceiver: the time, in epoch millis, the alarm was set for */
+    static final String EXTRA_FIRE_TIME = "fire_time";
+
+    private static final String PREFERENCES = "alarm_scheduler";
+    // Set once the weekly alarmManager alarms of every alarm day are cancelled
+    private static final String PREF_PER_DAY_ALARMS_CANCELLED = "per_day_alarms_cancelled";
+    // The time the alarmManager alarm is set for, NOT_SET if it is not set
+    private static final String PREF_REGISTERED_TIME = "registered_time";
+    private static final long NOT_SET = -1;
+    private static final String PREF_SNOOZE_MINUTES = "snooze_minutes";
+    private static final int DEFAULT_SNOOZE_MINUTES = 10;
+
+    /** Sets the alarmManager alarm for the next alarm to go off from now, in the background */
+    public static void reschedule(Context context) {
+        final Context appContext = context.getApplicationContext();
+        new AsyncTaskBox().submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                schedule(appContext, System.currentTimeMillis());
+                return null;
+            }
+        }, null);
+    }
+
+    /**
+     * Snoozes tasks for the snooze length and sets the alarmManager alarm for them if they go
+     * off before the alarm set now, in the background
+     */
+    public static void snooze(Context context, final List<String> taskNames) {
+        final Context appContext = context.getApplicationContext();
+        final long now = System.currentTimeMillis();
+        new AsyncTaskBox().submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                snoozeNow(appContext, taskNames, now);
+                return null;
+            }
+        }, null);
+    }
+
+    /**
+     * Snoozes tasks for the snooze length from a time and sets the alarmManager alarm for
+     * them if they go off before the alarm set now. Writes the model, so it must not be
+     * called on the main thread.
+     * @param now epoch millis
+     */
+    static void snoozeNow(Context context, List<String> taskNames, long now) {
+        long fireAt = now + TimeUnit.MINUTES.toMillis(getSnoozeMinutes(context));
+        TaskBox taskBox = new TaskBox();
+        for (String taskName : taskNames)
+            taskBox.snooze(context, taskName, fireAt);
+        schedule(context, now);
+    }
+
+    /** @return how many minutes a snooze puts a task off for */
+    public static int getSnoozeMinutes(Context context) {
+        return context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE)
+                .getInt(PREF_SNOOZE_MINUTES, DEFAULT_SNOOZE_MINUTES);
+    }
+
+    /** @param minutes how many minutes later snoozes put a task off for, at least 1 */
+    public static void setSnoozeMinutes(Context context, int minutes) {
+        if (minutes < 1)
+            throw new IllegalArgumentException("Snooze of " + minutes + " minutes");
+        context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).edit()
+                .putInt(PREF_SNOOZE_MINUTES, minutes).commit();
+    }
+
+    /**
+     * Makes the alarmManager alarm go off for the next alarm after a time, or not at all if
+     * there is no alarm. The next time is worked out from the cached model, read in one query
+     * if it is not loaded, and compared with the time the alarmManager alarm is set for; the
+     * alarmManager is only called if they differ. Reads the model, so it must not be called
+     * on the main thread.
+     * @param after epoch millis
+     * @return whether the alarmManager alarm was set or cancelled
+     */
+    static synchronized boolean schedule(Context context, long after) {
+        NextFire next = new TaskBox().getNextFire(context, after);
+        long time = next == null ? NOT_SET : next.getTime();
+
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        /** Restarting the device or force stopping the app cancels it without telling the app */
+        PendingIntent registered = PendingIntent.getBroadcast(context, 0,
+                new Intent(context, AlarmReceiver.class), PendingIntent.FLAG_NO_CREATE);
+        long registeredTime = registered == null ? NOT_SET : preferences.getLong(PREF_REGISTERED_TIME, NOT_SET);
+        if (time == registeredTime)
+            return false;
+
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (time == NOT_SET) {
+            alarmManager.cancel(registered);
+            registered.cancel();
+        } else {
+            PendingIntent operation = getOperation(context, time);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+                alarmManager.setExact(AlarmManager.RTC_WAKEUP, time, operation);
+            else
+                alarmManager.set(AlarmManager.RTC_WAKEUP, time, operation);
+        }
+        preferences.edit().putLong(PREF_REGISTERED_TIME, time).commit();
+        return true;
+    }
+
+    /**
+     * Called by AlarmReceiver when the alarmManager alarm goes off: finds the alarms and takes
+     * the snoozes due and sets the alarmManager alarm for the next ones. Reads the model, so
+     * it must not be called on the main thread.
+     * @param fireTime the time the alarmManager alarm was set for
+     * @return the names of the tasks due, once each; no alarms if they were changed since
+     *         the alarm was set
+     */
+    static List<String> fire(Context context, long fireTime) {
+        TaskBox taskBox = new TaskBox();
+        NextFire due = taskBox.getNextFire(context, fireTime - 1);
+        List<Snooze> snoozed = taskBox.takeSnoozes(context, fireTime);
+
+        /** Alarms that should have gone off while the alarm was late are not made up for */
+        schedule(context, Math.max(fireTime, System.currentTimeMillis()));
+
+        Set<String> taskNames = new LinkedHashSet<>();
+        if (due != null && due.getTime() == fireTime) {
+            for (Alarm alarm : due.getAlarms())
+                taskNames.add(alarm.getTaskName());
+        }
+        for (Snooze snooze : snoozed)
+            taskNames.add(snooze.getTaskName());
+        return new ArrayList<>(taskNames);
+    }
+
+    /**
+     * Takes the snoozes that should have gone off while the device was off. Unlike alarms,
+     * which go off again on their next day, a snooze only goes off once, so they are made
+     * up for. Reads the model, so it must not be called on the main thread.
+     * @return the names of the tasks snoozed, once each
+     */
+    static List<String> takeOverdueSnoozes(Context context, long now) {
+        Set<String> taskNames = new LinkedHashSet<>();
+        for (Snooze snooze : new TaskBox().takeSnoozes(context, now))
+            taskNames.add(snooze.getTaskName());
+        return new ArrayList<>(taskNames);
+    }
+
+    /**
+     * Cancels the alarmManager alarms set by older versions of the app and sets the next one.
+     * Versions that stored one row per day left request codes in the model, versions after
+     * them set a weekly alarm for every checked day of every alarm. Both are only cancelled
+     * once. Reads the model, so it must not be called on the main thread.
+     */
+    public static void upgradeLegacyAlarms(Context context) {
+        TaskBox taskBox = new TaskBox();
+        for (int requestCode : taskBox.takeLegacyRequestCodes(context))
+            cancelLegacy(context, requestCode);
+
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        if (!preferences.getBoolean(PREF_PER_DAY_ALARMS_CANCELLED, false)) {
+            for (Alarm alarm : taskBox.getAllAlarms(context)) {
+                for (int day = 1; day < 8; day++) {
+                    if ((alarm.getDaysMask() & Alarm.dayBit(day)) != 0)
+                        cancelLegacy(context, alarm.getRequestCode(day));
+                }
+            }
+            preferences.edit().putBoolean(PREF_PER_DAY_ALARMS_CANCELLED, true).commit();
+        }
+
+        schedule(context, System.currentTimeMillis());
+    }
+
+    /** This intent wakes AlarmReceiver. There is only one, setting it replaces the one set before. */
+    private static PendingIntent getOperation(Context context, long fireTime) {
+        Intent intent = new Intent(context, AlarmReceiver.class);
+        intent.putExtra(EXTRA_FIRE_TIME, fireTime);
+
+        return PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    /** Cancels an alarmManager alarm that opened AlertActivity, as older versions set them */
+    private static void cancelLegacy(Context context, int requestCode) {
+        Intent intent = new Intent(context, AlertActivity.class);
+        PendingIntent operation = PendingIntent.getActivity(context, requestCode, intent, PendingIntent.FLAG_NO_CREATE);
+        if (operation != null) {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            alarmManager.cancel(operation);
+            operation.cancel();
+        }
+    }
+}
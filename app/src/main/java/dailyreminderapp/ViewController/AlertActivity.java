@@ -1,19 +1,20 @@
 package dailyreminderapp.ViewController;
 
-import android.app.AlarmManager;
-import android.app.PendingIntent;
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.support.v4.app.DialogFragment;
 import android.support.v4.app.FragmentActivity;
 import android.widget.Toast;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.Collections;
+import java.util.List;
 
+import dailyreminderapp.Model.AsyncTaskBox;
 import dailyreminderapp.Model.History;
-import dailyreminderapp.Model.Task;
-import dailyreminderapp.Model.TaskBox;
 
 /**
  * Utilized the link below as a reference guide:
@@ -24,67 +25,182 @@ import dailyreminderapp.Model.TaskBox;
  * This is the "notification" we are using right now. But it only contains a dialog box so it is
  * not a real notification. We can change this to a real notification that has a ringtone or a
  * vibrating function in the future.
+ *
+ * Every task due at the same time is shown by one alert. Tasks that come due while it is
+ * open are added to it instead of opening another one (see open()). The user answers for
+ * each task or for all of them at once, and the alert closes when none are left.
+ * NotificationAlerts shows the tasks as notifications instead, when the user chose it; a task
+ * whose notification is tapped is taken over by the alert.
  */
 
 public class AlertActivity extends FragmentActivity {
 
-    private AlarmManager alarmManager;
-    private PendingIntent operation;
+    /** Intent extra: the names of the tasks due */
+    static final String EXTRA_TASK_NAMES = "task_names";
+    /** Intent extra of alerts set by older versions: the name of the one task due */
+    private static final String EXTRA_TASK_NAME = "task_name";
+
+    private static final String DIALOG_TAG = "AlertAlarm";
+
+    private ArrayList<String> pending; // Tasks not answered yet, in the order they came due
+    private boolean done; // Whether any task was marked done, to show the history afterwards
+
+    /**
+     * Opens the alert for tasks, or adds them to the alert if it is open already
+     * @param context any context, the alert is opened as a new task
+     * @param wokeAt from AlertTiming.now(), when the app was woken for them
+     */
+    static void open(Context context, List<String> taskNames, long wokeAt) {
+        Intent intent = newIntent(context, taskNames);
+        intent.putExtra(AlertTiming.EXTRA_WOKE_AT, wokeAt);
+        context.startActivity(intent);
+    }
+
+    /** @return the intent open() starts, without timing */
+    static Intent newIntent(Context context, List<String> taskNames) {
+        Intent intent = new Intent(context, AlertActivity.class);
+        intent.putStringArrayListExtra(EXTRA_TASK_NAMES, new ArrayList<>(taskNames));
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        return intent;
+    }
+
+    /**
+     * @param takeTime when the tasks were done
+     * @return a history for each task, to be stored in one write
+     */
+    static List<History> newHistories(List<String> taskNames, Calendar takeTime) {
+        String dateString = new SimpleDateFormat("MMM d, yyyy").format(takeTime.getTime());
+        int hour = takeTime.get(Calendar.HOUR_OF_DAY);
+        int minute = takeTime.get(Calendar.MINUTE);
+
+        List<History> histories = new ArrayList<>();
+        for (String taskName : taskNames) {
+            History history = new History();
+            history.setHourDone(hour);
+            history.setMinuteDone(minute);
+            history.setDateString(dateString);
+            history.setTaskName(taskName);
+            history.setDoneAt(takeTime.getTimeInMillis());
+            histories.add(history);
+        }
+        return histories;
+    }
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        /** Creating an Alert Dialog Window */
-        AlertAlarm alert = new AlertAlarm();
+        if (savedInstanceState != null) {
+            /** The dialog is brought back by the fragment manager */
+            pending = savedInstanceState.getStringArrayList(EXTRA_TASK_NAMES);
+            done = savedInstanceState.getBoolean("done");
+            getIntent().removeExtra(AlertTiming.EXTRA_WOKE_AT);
+            return;
+        }
 
-        /** Opening the Alert Dialog Window. This will be opened when the alarm goes off */
-        alert.show(getSupportFragmentManager(), "AlertAlarm");
+        pending = new ArrayList<>();
+        addPending(getIntent());
+        if (pending.isEmpty())
+            finish();
+        else
+            showAlert(null);
     }
 
-    // Snooze
-    public void doNeutralClick(String taskName){
-        final int _id = (int) System.currentTimeMillis();
-        final long minute = 60000;
-        long snoozeLength = 10;
-        long currTime = System.currentTimeMillis();
-        long min = currTime + minute * snoozeLength;
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        setIntent(intent);
+        addPending(intent);
+        showAlert(null);
+    }
 
-        Intent intent = new Intent(getBaseContext(), AlertActivity.class);
-        intent.putExtra("task_name", taskName);
+    @Override
+    protected void onResume() {
+        super.onResume();
 
-        operation = PendingIntent.getActivity(getBaseContext(), _id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        /** Timed once for each time the alert was opened by an alarm */
+        long wokeAt = getIntent().getLongExtra(AlertTiming.EXTRA_WOKE_AT, AlertTiming.NOT_WOKEN);
+        getIntent().removeExtra(AlertTiming.EXTRA_WOKE_AT);
+        AlertTiming.logIdle(AlertTiming.PATH_ACTIVITY, wokeAt, pending.size());
+    }
 
-        /** Getting a reference to the System Service ALARM_SERVICE */
-        alarmManager = (AlarmManager) getBaseContext().getSystemService(ALARM_SERVICE);
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putStringArrayList(EXTRA_TASK_NAMES, pending);
+        outState.putBoolean("done", done);
+    }
 
-        alarmManager.set(AlarmManager.RTC_WAKEUP, min, operation);
-        Toast.makeText(getBaseContext(), "Alarm for " + taskName + " was snoozed for 10 minutes", Toast.LENGTH_SHORT).show();
+    /** @return the tasks not answered yet, the list of the activity */
+    List<String> getPending() {
+        return pending;
+    }
 
-        finish();
+    /**
+     * Replaces the dialog shown
+     * @param taskName the task to answer for, or null for every task not answered yet
+     */
+    void showAlert(String taskName) {
+        DialogFragment shown = (DialogFragment) getSupportFragmentManager().findFragmentByTag(DIALOG_TAG);
+        if (shown != null)
+            shown.dismiss();
 
+        /** Opening the Alert Dialog Window. This will be opened when the alarm goes off */
+        AlertAlarm.newInstance(taskName).show(getSupportFragmentManager(), DIALOG_TAG);
+    }
+
+    // Snooze
+    public void doNeutralClick(String taskName){
+        snooze(Collections.singletonList(taskName));
+    }
+
+    // Snooze all
+    public void doSnoozeAll() {
+        snooze(new ArrayList<>(pending));
     }
 
     // I took it
     public void doPositiveClick(String taskName){
-        TaskBox taskBox = new TaskBox();
-        Task task = taskBox.getTaskByName(this, taskName);
-        History history = new History();
+        markDone(Collections.singletonList(taskName));
+    }
 
-        Calendar takeTime = Calendar.getInstance();
-        Date date = takeTime.getTime();
-        String dateString = new SimpleDateFormat("MMM d, yyyy").format(date);
+    // I took all of them
+    public void doAllDone() {
+        markDone(new ArrayList<>(pending));
+    }
+
+    // I won't take it
+    public void doNegativeClick(String taskName){
+        pending.remove(taskName);
+        next();
+    }
+
+    // I won't take any of them
+    public void doNegativeClickAll() {
+        pending.clear();
+        next();
+    }
+
+    private void snooze(List<String> taskNames) {
+        /** Stored in the background, they go off through the alarmManager alarm of the alarms */
+        AlarmScheduler.snooze(getApplicationContext(), taskNames);
 
+        int snoozeLength = AlarmScheduler.getSnoozeMinutes(getApplicationContext());
+        Toast.makeText(getBaseContext(), "Alarm for " + describe(taskNames) + " was snoozed for " + snoozeLength + " minutes", Toast.LENGTH_SHORT).show();
+
+        pending.removeAll(taskNames);
+        next();
+    }
+
+    /** Adds a history for each task, all in one write */
+    private void markDone(List<String> taskNames) {
+        Calendar takeTime = Calendar.getInstance();
         int hour = takeTime.get(Calendar.HOUR_OF_DAY);
         int minute = takeTime.get(Calendar.MINUTE);
         String am_pm = (hour < 12) ? "am" : "pm";
 
-        history.setHourDone(hour);
-        history.setMinuteDone(minute);
-        history.setDateString(dateString);
-        history.setTaskName(taskName);
-
-        taskBox.addToHistory(this, history);
+        /** Stored in the background, screens read after it is stored as their reads are queued behind it */
+        new AsyncTaskBox().addToHistory(getApplicationContext(), newHistories(taskNames, takeTime), null);
 
         String stringMinute;
         if (minute < 10)
@@ -96,15 +212,45 @@ public class AlertActivity extends FragmentActivity {
         if (nonMilitaryHour == 0)
             nonMilitaryHour = 12;
 
-        Toast.makeText(getBaseContext(),  taskName + " was taken at "+ nonMilitaryHour + ":" + stringMinute + " " + am_pm + ".", Toast.LENGTH_SHORT).show();
+        Toast.makeText(getBaseContext(), describe(taskNames) + (taskNames.size() == 1 ? " was" : " were") + " taken at "+ nonMilitaryHour + ":" + stringMinute + " " + am_pm + ".", Toast.LENGTH_SHORT).show();
 
-        Intent returnHistory = new Intent(getBaseContext(), MainActivity.class);
-        startActivity(returnHistory);
-        finish();
+        done = true;
+        pending.removeAll(taskNames);
+        next();
     }
 
-    // I won't take it
-    public void doNegativeClick(){
+    /** Shows the tasks left, or closes the alert if none are */
+    private void next() {
+        if (!pending.isEmpty()) {
+            showAlert(null);
+            return;
+        }
+
+        if (done) {
+            /** The home page is brought back if it is open, its history tab shows the new histories */
+            Intent returnHistory = new Intent(getBaseContext(), MainActivity.class);
+            returnHistory.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+            startActivity(returnHistory);
+        }
         finish();
     }
-}
\ No newline at end of file
+
+    private void addPending(Intent intent) {
+        List<String> taskNames = intent.getStringArrayListExtra(EXTRA_TASK_NAMES);
+        if (taskNames == null && intent.getStringExtra(EXTRA_TASK_NAME) != null)
+            taskNames = Collections.singletonList(intent.getStringExtra(EXTRA_TASK_NAME));
+        if (taskNames == null)
+            return;
+
+        for (String taskName : taskNames) {
+            /** Answered here, its notification is taken away if it was shown as one */
+            NotificationAlerts.cancel(this, taskName);
+            if (!pending.contains(taskName))
+                pending.add(taskName);
+        }
+    }
+
+    private static String describe(List<String> taskNames) {
+        return taskNames.size() == 1 ? taskNames.get(0) : taskNames.size() + " tasks";
+    }
+}
@@ -12,15 +12,31 @@ import android.os.Bundle;
 import android.support.v4.app.DialogFragment;
 import android.view.WindowManager.LayoutParams;
 
+import java.util.List;
+
 /**
  * Utilized the link below as a reference guide:
  * http://wptrafficanalyzer.in/blog/setting-up-alarm-using-alarmmanager-and-waking-up-screen-and-unlocking-keypad-on-alarm-goes-off-in-android/
  *
  * This is a dialog box that AlertActivity called when it is triggered.
- * It contains three buttons to let the user respond to an alarm.
+ * For one task it contains three buttons to let the user respond to an alarm. For several
+ * tasks it lists them, a task of the list is answered for on its own by tapping it, and
+ * the three buttons answer for all of them at once.
  */
 
 public class AlertAlarm extends DialogFragment {
+
+    private static final String ARG_TASK_NAME = "task_name";
+
+    /** @param taskName the task to answer for, or null for every task of the alert */
+    static AlertAlarm newInstance(String taskName) {
+        Bundle arguments = new Bundle();
+        arguments.putString(ARG_TASK_NAME, taskName);
+        AlertAlarm alert = new AlertAlarm();
+        alert.setArguments(arguments);
+        return alert;
+    }
+
     @Override
     public Dialog onCreateDialog(Bundle savedInstanceState) {
 
@@ -36,45 +52,73 @@ public class AlertAlarm extends DialogFragment {
         /** Making it so notification can only go away by pressing the buttons */
         setCancelable(false);
 
-        final String task_name = getActivity().getIntent().getStringExtra("task_name");
+        final AlertActivity act = (AlertActivity) getActivity();
+        List<String> pending = act.getPending();
+        String taskName = getArguments().getString(ARG_TASK_NAME);
+        if (taskName == null && pending.size() == 1)
+            taskName = pending.get(0);
+
+        if (taskName != null)
+            buildOne(builder, act, taskName);
+        else
+            buildAll(builder, act, pending.toArray(new String[pending.size()]));
+
+        return builder.create();
+    }
 
+    private static void buildOne(AlertDialog.Builder builder, final AlertActivity act, final String task_name) {
         builder.setMessage("Did you do your this task :"+ task_name + "?");
 
         builder.setPositiveButton("Yes", new OnClickListener() {
             @Override
             public void onClick(DialogInterface dialog, int which) {
-                AlertActivity act = (AlertActivity)getActivity();
                 act.doPositiveClick(task_name);
-                getActivity().finish();
             }
         });
 
         builder.setNeutralButton("Snooze", new OnClickListener() {
             @Override
             public void onClick(DialogInterface dialog, int which) {
-                /** Exit application on click OK */
-                AlertActivity act = (AlertActivity)getActivity();
                 act.doNeutralClick(task_name);
-                getActivity().finish();
             }
         });
 
         builder.setNegativeButton("Not Yet", new OnClickListener() {
             @Override
             public void onClick(DialogInterface dialog, int which) {
-                /** Exit application on click OK */
-                AlertActivity act = (AlertActivity)getActivity();
-                act.doNegativeClick();
-                getActivity().finish();
+                act.doNegativeClick(task_name);
             }
         });
-
-        return builder.create();
     }
 
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        getActivity().finish();
+    private static void buildAll(AlertDialog.Builder builder, final AlertActivity act, final String[] taskNames) {
+        /** Tapping a task asks about that task alone */
+        builder.setItems(taskNames, new OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                act.showAlert(taskNames[which]);
+            }
+        });
+
+        builder.setPositiveButton("All done", new OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                act.doAllDone();
+            }
+        });
+
+        builder.setNeutralButton("Snooze all", new OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                act.doSnoozeAll();
+            }
+        });
+
+        builder.setNegativeButton("Not Yet", new OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                act.doNegativeClickAll();
+            }
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package dailyreminderapp.ViewController;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Measures the alert paths, for comparing AlertActivity with the notifications of
+ * NotificationAlerts. Each path logs the time from the alarmManager alarm waking the app to
+ * the main thread having nothing left to do once the alert is shown, and the notification
+ * actions log how long their broadcast was kept going. Read them with adb logcat -s AlertTiming,
+ * or compare the two paths with AlertTimingTest.
+ */
+class AlertTiming {
+
+    private static final String TAG = "AlertTiming";
+
+    /** Told each idle time logIdle() logs, on the main thread */
+    interface Listener {
+        void onIdle(String path, int taskCount, long idleMillis);
+    }
+
+    private static volatile Listener listener;
+
+    /** Intent extra of AlertActivity: when the app was woken for the alert, in now() millis */
+    static final String EXTRA_WOKE_AT = "woke_at";
+    static final long NOT_WOKEN = -1;
+
+    static final String PATH_ACTIVITY = "activity";
+    static final String PATH_NOTIFICATION = "notification";
+
+    /** @return millis since boot, counting deep sleep, so a wake-up can be timed across it */
+    static long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Logs the time from waking to the main thread going idle. Must be called on the main
+     * thread, after the alert is shown or set to be shown.
+     * @param wokeAt from now(), or NOT_WOKEN to log nothing
+     */
+    static void logIdle(final String path, final long wokeAt, final int taskCount) {
+        if (wokeAt == NOT_WOKEN)
+            return;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                long idleMillis = now() - wokeAt;
+                Log.i(TAG, path + ": " + taskCount + " tasks, idle " + idleMillis + " ms after waking");
+                Listener told = listener;
+                if (told != null)
+                    told.onIdle(path, taskCount, idleMillis);
+                return false;
+            }
+        });
+    }
+
+    /** For tests collecting the idle times, null to stop */
+    static void setListener(Listener newListener) {
+        listener = newListener;
+    }
+
+    /** @param receivedAt from now(), when the broadcast of the action was received */
+    static void logAction(String action, long receivedAt) {
+        Log.i(TAG, action + ": handled " + (now() - receivedAt) + " ms after receiving it");
+    }
+}
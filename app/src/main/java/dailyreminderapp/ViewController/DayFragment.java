@@ -0,0 +1,184 @@
+package dailyreminderapp.ViewController;
+
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.support.v4.app.Fragment;
+import android.view.Gravity;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TableLayout;
+import android.widget.TableRow;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import dailyreminderapp.Model.Alarm;
+import dailyreminderapp.Model.AsyncTaskBox;
+import dailyreminderapp.Model.ModelEvents;
+
+/**
+ * This fragment handles the view and controller of a tab on home screen that shows the
+ * alarms going off on one day, sorted by time of day. The table is read once; after that
+ * rows are added and removed as ModelEvents reports alarms added and removed.
+ */
+public abstract class DayFragment extends Fragment {
+
+    private TableLayout stk;
+    private Typeface lightFont;
+    private Future<List<Alarm>> loading; // The alarms being read for the table
+    // False until the alarms read are shown. Changes before that are ignored, they were
+    // stored before the read ran so it sees them.
+    private boolean loaded;
+    private final List<Alarm> shown = new ArrayList<>(); // The alarm of each row, in the order of the rows
+
+    private final ModelEvents.Listener listener = new ModelEvents.Listener() {
+        @Override
+        public void onAlarmAdded(Alarm alarm) {
+            if (loaded && (alarm.getDaysMask() & Alarm.dayBit(getDay())) != 0)
+                addAlarm(alarm);
+        }
+
+        @Override
+        public void onAlarmRemoved(Alarm alarm) {
+            if (loaded)
+                removeAlarm(alarm);
+        }
+
+        @Override
+        public void onReset() {
+            load();
+        }
+    };
+
+    /** @return the layout of the fragment, holding a TableLayout */
+    protected abstract int getLayout();
+
+    /** @return the id of the TableLayout in the layout */
+    protected abstract int getTable();
+
+    /** @return the Calendar day of the week whose alarms are shown, Sunday is 1 */
+    protected abstract int getDay();
+
+    /** @return the text shown when there are no alarms that day */
+    protected abstract String getEmptyText();
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container,
+                             Bundle savedInstanceState) {
+
+        View rootView = inflater.inflate(getLayout(), container, false);
+
+        stk = (TableLayout) rootView.findViewById(getTable());
+
+        lightFont = Typeface.createFromAsset(container.getContext().getAssets(), "fonts/Roboto-Light.ttf");
+
+        load();
+        ModelEvents.getInstance().register(listener);
+        return rootView;
+    }
+
+    @Override
+    public void onDestroyView() {
+        ModelEvents.getInstance().unregister(listener);
+        loading.cancel(false);
+        super.onDestroyView();
+    }
+
+    /** Reads the alarms of the day and shows them instead of the rows shown now */
+    private void load() {
+        if (loading != null)
+            loading.cancel(false);
+        loaded = false;
+        loading = new AsyncTaskBox().getAlarms(stk.getContext().getApplicationContext(), getDay(),
+                new AsyncTaskBox.Callback<List<Alarm>>() {
+                    @Override
+                    public void onResult(List<Alarm> alarms) {
+                        showAlarms(alarms);
+                    }
+                });
+    }
+
+    /** Adds a row for each alarm, or one saying there are none */
+    private void showAlarms(List<Alarm> alarms) {
+        stk.removeAllViews();
+        shown.clear();
+        for (Alarm alarm : alarms)
+            addAlarm(alarm);
+        if (shown.isEmpty())
+            stk.addView(newEmptyRow());
+        loaded = true;
+    }
+
+    /** Adds the row of an alarm at its place in the table */
+    private void addAlarm(Alarm alarm) {
+        if (shown.isEmpty())
+            stk.removeAllViews(); // The row saying there are no alarms, if shown
+
+        int index = Collections.binarySearch(shown, alarm);
+        if (index < 0)
+            index = -index - 1;
+        shown.add(index, alarm);
+        stk.addView(newRow(alarm), index);
+    }
+
+    private void removeAlarm(Alarm alarm) {
+        for (int i = 0; i < shown.size(); i++) {
+            if (shown.get(i).getId() == alarm.getId()) {
+                shown.remove(i);
+                stk.removeViewAt(i);
+                if (shown.isEmpty())
+                    stk.addView(newEmptyRow());
+                return;
+            }
+        }
+    }
+
+    private TableRow newRow(Alarm alarm) {
+        TableRow tbrow = new TableRow(stk.getContext());
+
+        TextView t1v = new TextView(stk.getContext());
+        t1v.setText(alarm.getTaskName());
+        t1v.setTextColor(Color.WHITE);
+        t1v.setGravity(Gravity.CENTER);
+        t1v.setPadding(30, 30, 30, 30);
+        t1v.setTextSize(25);
+        t1v.setTypeface(lightFont);
+        t1v.setMaxEms(6);
+
+        tbrow.addView(t1v);
+
+        TextView t2v = new TextView(stk.getContext());
+
+        String time = alarm.getStringTime();
+        t2v.setText(time);
+        t2v.setTextColor(Color.WHITE);
+        t2v.setGravity(Gravity.CENTER);
+        t2v.setPadding(30, 30, 30, 30);
+        t2v.setTextSize(25);
+        t2v.setTypeface(lightFont);
+        tbrow.addView(t2v);
+
+        return tbrow;
+    }
+
+    private TableRow newEmptyRow() {
+        TableRow tbrow = new TableRow(stk.getContext());
+
+        TextView t1v = new TextView(stk.getContext());
+        t1v.setText(getEmptyText());
+        t1v.setTextColor(Color.WHITE);
+        t1v.setGravity(Gravity.CENTER);
+        t1v.setPadding(30, 30, 30, 30);
+        t1v.setTextSize(25);
+        t1v.setTypeface(lightFont);
+        t1v.setMaxEms(10);
+        tbrow.addView(t1v);
+
+        return tbrow;
+    }
+}
@@ -1,18 +1,12 @@
 package dailyreminderapp.ViewController;
 
 import dailyreminderapp.Model.Alarm;
-import dailyreminderapp.Model.Task;
+import dailyreminderapp.Model.AsyncTaskBox;
 import dailyreminderapp.Model.TaskBox;
 
-import java.net.URISyntaxException;
-import java.util.Calendar;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.Future;
 
-import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.app.TimePickerDialog;
-import android.content.Intent;
 import android.graphics.Typeface;
 import android.os.Bundle;
 import android.support.v7.app.ActionBarActivity;
@@ -35,19 +29,19 @@ import teamqitalach.taskapp.R;
  * http://wptrafficanalyzer.in/blog/setting-up-alarm-using-alarmmanager-and-waking-up-screen-and-unlocking-keypad-on-alarm-goes-off-in-android/
  *
  * This activity handles the view and controller of the edit page, where the user can edit an alarm
- * It is very similar to the add activity, but it uses tempIds and tempNames in the TaskBox model
- * to indicate which alarms we need to edit or delete
+ * It is very similar to the add activity, but it uses the tempId and tempName in the TaskBox model
+ * to indicate which alarm we need to edit or delete
  */
 public class EditActivity extends ActionBarActivity {
-    private AlarmManager alarmManager;
-    private PendingIntent operation;
     private boolean dayOfWeekList[] = new boolean[7];
 
     int hour, minute;
     TextView timeLabel;
     TaskBox taskBox = new TaskBox();
-    List<Long> tempIds = taskBox.getTempIds();
+    AsyncTaskBox asyncTaskBox = new AsyncTaskBox();
+    Alarm editedAlarm; // The alarm being edited, its id is the tempId in the task box, null until read
     String tempTask_name;
+    private Future<Alarm> loading; // The edited alarm being read
 
     // Time picker dialog that pops up when the user presses the time string
     // This method specifies the hour and minute of the time picker before the user
@@ -73,199 +67,125 @@ public class EditActivity extends ActionBarActivity {
         Typeface lightFont = Typeface.createFromAsset(this.getAssets(), "fonts/Roboto-Light.ttf");
         timeLabel.setTypeface(lightFont);
 
-        // Set up the time string on the page
-        // Uses the tempIds in the task box to get the time string
-        try {
-            Alarm firstAlarm = taskBox.getAlarmById(getApplicationContext(), tempIds.get(0));
-            hour = firstAlarm.getHour();
-            minute = firstAlarm.getMinute();
-            timeLabel.setText(setTime(hour, minute));
-            taskBox.setTempName(firstAlarm.getTaskName()) ;
-            timeLabel.setOnClickListener(new View.OnClickListener() {
-                public void onClick(View v) {
-                    new TimePickerDialog(EditActivity.this,
-                            t,
-                            hour,
-                            minute,
-                            false).show();
-                }
-            });
-            timeLabel.setText(setTime(hour, minute));
-
-        } catch (URISyntaxException e) {
-            e.printStackTrace();
-        }
-
-        EditText editText = (EditText) findViewById(R.id.task_name);
-        tempTask_name = taskBox.getTempName();
-        editText.setText(tempTask_name);
-
-        for(Long id: tempIds){
-            try{
-                int day = taskBox.getDayOfWeek(getApplicationContext(), id);
-                CheckBox checkBoxMon = (CheckBox) findViewById(R.id.checkbox_monday);
-                CheckBox checkBoxTues = (CheckBox) findViewById(R.id.checkbox_tuesday);
-                CheckBox checkBoxWed = (CheckBox) findViewById(R.id.checkbox_wednesday);
-                CheckBox checkBoxThur = (CheckBox) findViewById(R.id.checkbox_thursday);
-                CheckBox checkBoxFri = (CheckBox) findViewById(R.id.checkbox_friday);
-                CheckBox checkBoxSat = (CheckBox) findViewById(R.id.checkbox_saturday);
-                CheckBox checkBoxSun = (CheckBox) findViewById(R.id.checkbox_sunday);
-                if(day == 2) {
-                    checkBoxMon.setChecked(true);
-                    dayOfWeekList[1] = true;
-                } else if(day == 3) {
-                    checkBoxTues.setChecked(true);
-                    dayOfWeekList[2] = true;
-                } else if(day == 4) {
-                    checkBoxWed.setChecked(true);
-                    dayOfWeekList[3] = true;
-                } else if(day == 5) {
-                    checkBoxThur.setChecked(true);
-                    dayOfWeekList[4] = true;
-                } else if(day == 6) {
-                    checkBoxFri.setChecked(true);
-                    dayOfWeekList[5] = true;
-                } else if(day == 7) {
-                    checkBoxSat.setChecked(true);
-                    dayOfWeekList[6] = true;
-                } else if(day == 1) {
-                    checkBoxSun.setChecked(true);
-                    dayOfWeekList[0] = true;
-                }
-            } catch (URISyntaxException e) {
-                e.printStackTrace();
+        timeLabel.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                new TimePickerDialog(EditActivity.this,
+                        t,
+                        hour,
+                        minute,
+                        false).show();
             }
-        }
+        });
+
+        // Read the alarm of the tempId in the task box, the page is filled in once it is read
+        loading = asyncTaskBox.getAlarmById(getApplicationContext(), taskBox.getTempId(),
+                new AsyncTaskBox.Callback<Alarm>() {
+                    @Override
+                    public void onResult(Alarm alarm) {
+                        showAlarm(alarm);
+                    }
+                });
 
         OnClickListener setClickListener = new OnClickListener() {
 
             @Override
             public void onClick(View v) {
                 int checkBoxCounter = 0;
+                for (boolean day : dayOfWeekList) {
+                    if (day)
+                        checkBoxCounter++;
+                }
 
                 EditText editText = (EditText) findViewById(R.id.task_name);
                 String task_name = editText.getText().toString();
 
-                /** Updating model */
-                Alarm alarm = new Alarm();
-
-                /** If Task does not already exist */
-                if (!taskBox.taskExist(getApplicationContext(), task_name)) {
-                    Task task = new Task();
-                    task.setTaskName(task_name);
-                    alarm.setHour(hour);
-                    alarm.setMinute(minute);
-                    alarm.setTaskName(task_name);
-                    alarm.setDayOfWeek(dayOfWeekList);
-                    task.addAlarm(alarm);
-                    long taskId = taskBox.addTask(getApplicationContext() ,task);
-                    task.setTaskId(taskId);
-                    taskBox.addAlarm(getApplicationContext(), alarm, task);
-                } else { // If Task already exists
-                    Task task = taskBox.getTaskByName(getApplicationContext(), task_name);
-                    alarm.setHour(hour);
-                    alarm.setMinute(minute);
-                    alarm.setTaskName(task_name);
-                    alarm.setDayOfWeek(dayOfWeekList);
-                    task.addAlarm(alarm);
-                    taskBox.addAlarm(getApplicationContext(), alarm, task);
-                }
-                List<Long> ids = new LinkedList<Long>();
-                try {
-                    List<Alarm> alarms = taskBox.getAlarmByTask(getApplicationContext(), task_name);
-                    for(Alarm tempAlarm: alarms) {
-                        if(tempAlarm.getHour() == hour && tempAlarm.getMinute() == minute) {
-                            ids = tempAlarm.getIds();
-                            break;
-                        }
-                    }
-                } catch (URISyntaxException e) {
-                    e.printStackTrace();
-                }
-
-                for(int i=0; i<7; i++) {
-                    if (dayOfWeekList[i] && task_name.length() != 0) {
-
-                        int dayOfWeek = i+1;
-
-                        long _id = ids.get(checkBoxCounter);
-                        int id = (int) _id;
-                        checkBoxCounter++;
-
-                        /** This intent invokes the activity AlertActivity, which in turn opens the AlertAlarm window */
-                        Intent intent = new Intent(getBaseContext(), AlertActivity.class);
-                        intent.putExtra("task_name", task_name);
-
-                        operation = PendingIntent.getActivity(getBaseContext(), id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-
-                        /** Getting a reference to the System Service ALARM_SERVICE */
-                        alarmManager = (AlarmManager) getBaseContext().getSystemService(ALARM_SERVICE);
-
-                        /** Creating a calendar object corresponding to the date and time set by the user */
-                        Calendar calendar = Calendar.getInstance();
-
-                        calendar.set(Calendar.HOUR_OF_DAY, hour);
-                        calendar.set(Calendar.MINUTE, minute);
-                        calendar.set(Calendar.SECOND, 0);
-                        calendar.set(Calendar.MILLISECOND, 0);
-                        calendar.set(Calendar.DAY_OF_WEEK, dayOfWeek);
-
-                        /** Converting the date and time in to milliseconds elapsed since epoch */
-                        long alarm_time = calendar.getTimeInMillis();
-
-                        if (calendar.before(Calendar.getInstance()))
-                            alarm_time += AlarmManager.INTERVAL_DAY * 7;
-
-                        alarmManager.setRepeating(AlarmManager.RTC_WAKEUP, alarm_time,
-                                alarmManager.INTERVAL_DAY * 7, operation);
-                    }
-                }
                 /** Input form is not completely filled out */
-                if(checkBoxCounter == 0 || task_name.length() == 0)
+                if(checkBoxCounter == 0 || task_name.length() == 0) {
                     Toast.makeText(getBaseContext(), "Please input a task name or check at least one day!", Toast.LENGTH_SHORT).show();
-                else { // Input form is completely filled out
-                    for (long alarmID : tempIds) {
-                        taskBox.deleteAlarm(getApplicationContext(), alarmID);
-
-                        Intent intent = new Intent(getBaseContext(), AlertActivity.class);
-                        PendingIntent operation = PendingIntent.getActivity(getBaseContext(), (int) alarmID, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-                        AlarmManager alarmManager = (AlarmManager) getBaseContext().getSystemService(ALARM_SERVICE);
-                        alarmManager.cancel(operation);
-                    }
-
-                    // Delete the task if there is no alarm for it
-                    try {
-                        List<Alarm> tempTracker = taskBox.getAlarmByTask(getBaseContext(), tempTask_name);
-                        if(tempTracker.size() == 0)
-                            taskBox.deleteTask(getBaseContext(), tempTask_name);
-                    } catch (URISyntaxException e) {
-                        e.printStackTrace();
-                    }
-
-                    Toast.makeText(getBaseContext(), "Alarm for " + task_name + " is set successfully", Toast.LENGTH_SHORT).show();
-                    Intent returnHome = new Intent(getBaseContext(), MainActivity.class);
-                    startActivity(returnHome);
-                    finish();
+                    return;
                 }
+
+                /** Updating model */
+                Alarm alarm = new Alarm();
+                alarm.setHour(hour);
+                alarm.setMinute(minute);
+                alarm.setTaskName(task_name);
+                alarm.setDayOfWeek(dayOfWeekList);
+
+                /** The edited alarm is replaced by the new one, in the background */
+                v.setEnabled(false);
+                asyncTaskBox.replaceAlarm(getApplicationContext(), editedAlarm, alarm,
+                        new AsyncTaskBox.Callback<Alarm>() {
+                            @Override
+                            public void onResult(Alarm saved) {
+                                /** The new alarm, or the one after the edited one, may be the next to go off */
+                                AlarmScheduler.reschedule(getApplicationContext());
+
+                                Toast.makeText(getApplicationContext(), "Alarm for " + saved.getTaskName() + " is set successfully", Toast.LENGTH_SHORT).show();
+                                finish();
+                            }
+                        });
             }
         };
 
         OnClickListener cancelClickListener = new OnClickListener() {
             @Override
             public void onClick(View v) {
-                Intent returnHome = new Intent(getBaseContext(), TaskBoxActivity.class);
-                startActivity(returnHome);
                 finish();
             }
         };
 
         Button btnSetAlarm = (Button) findViewById(R.id.btn_set_alarm);
         btnSetAlarm.setOnClickListener(setClickListener);
+        btnSetAlarm.setEnabled(false); // Until the edited alarm is read
 
         Button btnQuitAlarm = (Button) findViewById(R.id.btn_cancel_alarm);
         btnQuitAlarm.setOnClickListener(cancelClickListener);
     }
 
+    @Override
+    protected void onDestroy() {
+        loading.cancel(false);
+        super.onDestroy();
+    }
+
+    /** Fills the page in with the alarm being edited */
+    private void showAlarm(Alarm alarm) {
+        if (alarm == null) { // Deleted since the task box page was shown
+            finish();
+            return;
+        }
+
+        editedAlarm = alarm;
+        hour = editedAlarm.getHour();
+        minute = editedAlarm.getMinute();
+        taskBox.setTempName(editedAlarm.getTaskName()) ;
+        timeLabel.setText(setTime(hour, minute));
+
+        EditText editText = (EditText) findViewById(R.id.task_name);
+        tempTask_name = taskBox.getTempName();
+        editText.setText(tempTask_name);
+
+        // Check the days of the alarm, in the order of dayOfWeekList
+        CheckBox[] checkBoxes = {
+                (CheckBox) findViewById(R.id.checkbox_sunday),
+                (CheckBox) findViewById(R.id.checkbox_monday),
+                (CheckBox) findViewById(R.id.checkbox_tuesday),
+                (CheckBox) findViewById(R.id.checkbox_wednesday),
+                (CheckBox) findViewById(R.id.checkbox_thursday),
+                (CheckBox) findViewById(R.id.checkbox_friday),
+                (CheckBox) findViewById(R.id.checkbox_saturday)
+        };
+        for (int i = 0; i < 7; i++) {
+            if (editedAlarm.getDayOfWeek()[i]) {
+                checkBoxes[i].setChecked(true);
+                dayOfWeekList[i] = true;
+            }
+        }
+
+        findViewById(R.id.btn_set_alarm).setEnabled(true);
+    }
+
     @Override
     /** Inflate the menu; this adds items to the action bar if it is present */
     public boolean onCreateOptionsMenu(Menu menu) {
@@ -341,33 +261,23 @@ public class EditActivity extends ActionBarActivity {
         int id = item.getItemId();
 
         if (id == R.id.action_delete) {
-            for (long alarmID : tempIds) {
-                taskBox.deleteAlarm(getApplicationContext(), alarmID);
-
-                Intent intent = new Intent(getBaseContext(), AlertActivity.class);
-                PendingIntent operation = PendingIntent.getActivity(getBaseContext(), (int) alarmID, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-                AlarmManager alarmManager = (AlarmManager) getBaseContext().getSystemService(ALARM_SERVICE);
-                alarmManager.cancel(operation);
-            }
-
-            // Delete the task if there is no alarm for it
-            try {
-                List<Alarm> tempTracker = taskBox.getAlarmByTask(getBaseContext(), tempTask_name);
-                if(tempTracker.size() == 0)
-                    taskBox.deleteTask(getBaseContext(), tempTask_name);
-            } catch (URISyntaxException e) {
-                e.printStackTrace();
-            }
+            if (editedAlarm == null) // Not read yet
+                return true;
+
+            /** Deleting it in the background, with its task if the task has no other alarm left */
+            final Alarm deleted = editedAlarm;
+            asyncTaskBox.deleteAlarmAndEmptyTask(getApplicationContext(), deleted,
+                    new AsyncTaskBox.Callback<Void>() {
+                        @Override
+                        public void onResult(Void result) {
+                            AlarmScheduler.reschedule(getApplicationContext());
+                            Toast.makeText(getApplicationContext(), "Alarm for " + deleted.getTaskName() + " is deleted successfully", Toast.LENGTH_SHORT).show();
+                        }
+                    });
 
-            Intent returnTaskBox = new Intent(getBaseContext(), TaskBoxActivity.class);
-            startActivity(returnTaskBox);
             finish();
-
-            Toast.makeText(getBaseContext(), "Alarm for " + tempTask_name + " is deleted successfully", Toast.LENGTH_SHORT).show();
             return true;
         }
-        Intent returnHome = new Intent(getBaseContext(), TaskBoxActivity.class);
-        startActivity(returnHome);
         finish();
         return super.onOptionsItemSelected(item);
     }
@@ -388,11 +298,4 @@ public class EditActivity extends ActionBarActivity {
             minuteWithZero = "" + minute;
         return nonMilitaryHour + ":" + minuteWithZero + am_pm;
     }
-
-    @Override
-    public void onBackPressed() {
-        Intent returnTaskBoxActivity = new Intent(getBaseContext(), TaskBoxActivity.class);
-        startActivity(returnTaskBoxActivity);
-        finish();
-    }
 }
\ No newline at end of file
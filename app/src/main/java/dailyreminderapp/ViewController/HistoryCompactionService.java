@@ -0,0 +1,54 @@
+package dailyreminderapp.ViewController;
+
+import android.app.IntentService;
+import android.content.Context;
+import android.content.Intent;
+
+import java.util.Calendar;
+
+import dailyreminderapp.Model.TaskBox;
+
+/**
+ * This service keeps the history table from growing without bound. Histories older than the
+ * horizon are rolled up into one row per task and day, off the main thread. It is started
+ * every time the app opens; when there is nothing to compact it costs one index lookup.
+ */
+public class HistoryCompactionService extends IntentService {
+    /** Intent extra: how many days of histories are kept as they are */
+    public static final String EXTRA_HORIZON_DAYS = "horizon_days";
+    public static final int DEFAULT_HORIZON_DAYS = 365;
+
+    public HistoryCompactionService() {
+        super("HistoryCompactionService");
+    }
+
+    /** Starts a compaction with the default horizon */
+    public static void start(Context c) {
+        start(c, DEFAULT_HORIZON_DAYS);
+    }
+
+    /**
+     * Starts a compaction
+     * @param horizonDays histories of the last horizonDays days are kept as they are
+     */
+    public static void start(Context c, int horizonDays) {
+        Intent intent = new Intent(c, HistoryCompactionService.class);
+        intent.putExtra(EXTRA_HORIZON_DAYS, horizonDays);
+        c.startService(intent);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        int horizonDays = intent.getIntExtra(EXTRA_HORIZON_DAYS, DEFAULT_HORIZON_DAYS);
+
+        /** The horizon is a midnight, so a day is never split between histories and totals */
+        Calendar horizon = Calendar.getInstance();
+        horizon.add(Calendar.DAY_OF_YEAR, -horizonDays);
+        horizon.set(Calendar.HOUR_OF_DAY, 0);
+        horizon.set(Calendar.MINUTE, 0);
+        horizon.set(Calendar.SECOND, 0);
+        horizon.set(Calendar.MILLISECOND, 0);
+
+        new TaskBox().compactHistory(this, horizon.getTimeInMillis());
+    }
+}
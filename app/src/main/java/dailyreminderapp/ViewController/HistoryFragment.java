@@ -8,12 +8,18 @@ import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.ScrollView;
 import android.widget.TableLayout;
 import android.widget.TableRow;
 import android.widget.TextView;
 
+import java.util.List;
+import java.util.concurrent.Future;
+
 import dailyreminderapp.Model.History;
-import dailyreminderapp.Model.TaskBox;
+import dailyreminderapp.Model.ModelEvents;
+import dailyreminderapp.Model.AsyncTaskBox;
 
 import teamqitalach.taskapp.R;
 
@@ -22,9 +28,50 @@ import teamqitalach.taskapp.R;
  * http://www.feelzdroid.com/2014/10/android-action-bar-tabs-swipe-views.html
  *
  * This fragment handles the view and controller of the history tab on home screen
+ * Histories are shown newest first and loaded a page at a time, the next page is
+ * loaded when the user scrolls near the bottom of the table. Pages are read in the
+ * background, one at a time. Histories added while the tab is shown are put on top.
  */
 
 public class HistoryFragment extends Fragment {
+    private static final int PAGE_SIZE = 50;
+    // How close to the bottom, in pixels, the user has to scroll for the next page to load
+    private static final int LOAD_MORE_DISTANCE = 500;
+
+    private ScrollView scrollView;
+    private TableLayout stk;
+    private long lastId; // Id of the oldest history shown, the next page starts below it
+    private boolean allLoaded;
+    private Future<List<History>> loading; // The page being read, null when none is
+
+    private final AsyncTaskBox taskBox = new AsyncTaskBox();
+
+    private final ModelEvents.Listener listener = new ModelEvents.Listener() {
+        @Override
+        public void onHistoryAdded(History history) {
+            // Before the first page is shown there is nothing to put it on top of, and the
+            // first page is read after it was stored, so it is on that page
+            if (lastId != Long.MAX_VALUE || allLoaded)
+                stk.addView(newRow(history), 1);
+        }
+    };
+
+    // Called on every scroll and every layout, the layout one fills a screen that the
+    // first page does not
+    private final ViewTreeObserver.OnScrollChangedListener scrollListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    loadMoreIfNeeded();
+                }
+            };
+    private final ViewTreeObserver.OnGlobalLayoutListener layoutListener =
+            new ViewTreeObserver.OnGlobalLayoutListener() {
+                @Override
+                public void onGlobalLayout() {
+                    loadMoreIfNeeded();
+                }
+            };
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
@@ -32,7 +79,8 @@ public class HistoryFragment extends Fragment {
 
         View rootView = inflater.inflate(R.layout.fragment_history, container, false);
 
-        TableLayout stk = (TableLayout) rootView.findViewById(R.id.table_history);
+        scrollView = (ScrollView) rootView;
+        stk = (TableLayout) rootView.findViewById(R.id.table_history);
 
         TableRow tbrow0 = new TableRow(container.getContext());
 
@@ -59,45 +107,99 @@ public class HistoryFragment extends Fragment {
 
         stk.addView(tbrow0);
 
-        TaskBox taskBox = new TaskBox();
+        lastId = Long.MAX_VALUE;
+        allLoaded = false;
+        loading = null;
+        loadPage();
 
-        for (History history: taskBox.getHistory(container.getContext())){
-            TableRow tbrow = new TableRow(container.getContext());
+        ViewTreeObserver observer = scrollView.getViewTreeObserver();
+        observer.addOnScrollChangedListener(scrollListener);
+        observer.addOnGlobalLayoutListener(layoutListener);
 
-            TextView t1v = new TextView(container.getContext());
-            t1v.setText(history.getTaskName());
-            t1v.setTextColor(Color.WHITE);
-            t1v.setGravity(Gravity.CENTER);
-            t1v.setMaxEms(4);
-            tbrow.addView(t1v);
+        ModelEvents.getInstance().register(listener);
+        return rootView;
+    }
 
-            TextView t2v = new TextView(container.getContext());
-            String date = history.getDateString();
-            t2v.setText(date);
-            t2v.setTextColor(Color.WHITE);
-            t2v.setGravity(Gravity.CENTER);
-            tbrow.addView(t2v);
+    @Override
+    public void onDestroyView() {
+        ModelEvents.getInstance().unregister(listener);
+        if (loading != null)
+            loading.cancel(false);
+        ViewTreeObserver observer = scrollView.getViewTreeObserver();
+        observer.removeOnScrollChangedListener(scrollListener);
+        observer.removeOnGlobalLayoutListener(layoutListener);
+        super.onDestroyView();
+    }
 
-            TextView t3v = new TextView(container.getContext());
+    /** Loads the next page if the user is close to the bottom of the table */
+    private void loadMoreIfNeeded() {
+        if (allLoaded || loading != null || scrollView.getHeight() == 0)
+            return;
 
-            int nonMilitaryHour = history.getHourDone() % 12;
-            if (nonMilitaryHour == 0)
-                nonMilitaryHour = 12;
+        int distanceToBottom = stk.getBottom() - (scrollView.getScrollY() + scrollView.getHeight());
+        if (distanceToBottom <= LOAD_MORE_DISTANCE)
+            loadPage();
+    }
 
-            String minute;
-            if (history.getMinuteDone() < 10)
-                minute = "0" + history.getMinuteDone();
-            else
-                minute = "" + history.getMinuteDone();
+    /** Reads the next page, its rows are added once it is read */
+    private void loadPage() {
+        loading = taskBox.getHistoryPage(stk.getContext().getApplicationContext(), lastId, PAGE_SIZE,
+                new AsyncTaskBox.Callback<List<History>>() {
+                    @Override
+                    public void onResult(List<History> page) {
+                        loading = null;
+                        showPage(page);
+                    }
+                });
+    }
 
-            String time = nonMilitaryHour + ":" + minute + " " + history.getAm_pmDone();
-            t3v.setText(time);
-            t3v.setTextColor(Color.WHITE);
-            t3v.setGravity(Gravity.CENTER);
-            tbrow.addView(t3v);
+    /** Adds a row for each history of a page */
+    private void showPage(List<History> page) {
+        if (page.size() < PAGE_SIZE)
+            allLoaded = true;
 
-            stk.addView(tbrow);
+        for (History history: page){
+            stk.addView(newRow(history));
+            lastId = history.getId();
          }
-        return rootView;
     }
-}
\ No newline at end of file
+
+    /** @return a row showing the task, date and time of a history */
+    private TableRow newRow(History history) {
+        TableRow tbrow = new TableRow(stk.getContext());
+
+        TextView t1v = new TextView(stk.getContext());
+        t1v.setText(history.getTaskName());
+        t1v.setTextColor(Color.WHITE);
+        t1v.setGravity(Gravity.CENTER);
+        t1v.setMaxEms(4);
+        tbrow.addView(t1v);
+
+        TextView t2v = new TextView(stk.getContext());
+        String date = history.getDateString();
+        t2v.setText(date);
+        t2v.setTextColor(Color.WHITE);
+        t2v.setGravity(Gravity.CENTER);
+        tbrow.addView(t2v);
+
+        TextView t3v = new TextView(stk.getContext());
+
+        int nonMilitaryHour = history.getHourDone() % 12;
+        if (nonMilitaryHour == 0)
+            nonMilitaryHour = 12;
+
+        String minute;
+        if (history.getMinuteDone() < 10)
+            minute = "0" + history.getMinuteDone();
+        else
+            minute = "" + history.getMinuteDone();
+
+        String time = nonMilitaryHour + ":" + minute + " " + history.getAm_pmDone();
+        t3v.setText(time);
+        t3v.setTextColor(Color.WHITE);
+        t3v.setGravity(Gravity.CENTER);
+        tbrow.addView(t3v);
+
+        return tbrow;
+    }
+}
@@ -0,0 +1,57 @@
+package dailyreminderapp.ViewController;
+
+import android.app.IntentService;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import dailyreminderapp.Model.Alarm;
+import dailyreminderapp.Model.Exporter;
+import dailyreminderapp.Model.Importer;
+
+/**
+ * This service imports alarms from a file off the main thread (see Importer for the format).
+ * All alarms are stored first and the next alarm to go off is set once at the end. If the
+ * import fails part way, the batches stored before the failure are kept and are set as well.
+ */
+public class ImportService extends IntentService {
+    private static final String TAG = "ImportService";
+
+    /** Intent extras: path of the file and name of its Exporter.Format */
+    public static final String EXTRA_PATH = "path";
+    public static final String EXTRA_FORMAT = "format";
+
+    public ImportService() {
+        super("ImportService");
+    }
+
+    /** Starts importing the alarms of a file */
+    public static void start(Context c, File file, Exporter.Format format) {
+        Intent intent = new Intent(c, ImportService.class);
+        intent.putExtra(EXTRA_PATH, file.getAbsolutePath());
+        intent.putExtra(EXTRA_FORMAT, format.name());
+        c.startService(intent);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        File file = new File(intent.getStringExtra(EXTRA_PATH));
+        Exporter.Format format = Exporter.Format.valueOf(intent.getStringExtra(EXTRA_FORMAT));
+
+        Importer importer = new Importer(this);
+        try {
+            List<Alarm> alarms = importer.importAlarms(file, format);
+            Log.i(TAG, "Imported " + alarms.size() + " alarms from " + file
+                    + ", skipped " + importer.getSkippedRows() + " rows");
+        } catch (IOException e) {
+            Log.e(TAG, "Could not import " + file, e);
+        } finally {
+            /** One of the alarms stored may be the next one to go off */
+            AlarmScheduler.schedule(this, System.currentTimeMillis());
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package dailyreminderapp.ViewController;
 
+import dailyreminderapp.Model.AsyncTaskBox;
+import dailyreminderapp.Model.TaskBox;
 import dailyreminderapp.ViewController.adapter.TabsAdapter;
 import teamqitalach.taskapp.R;
 
+import android.content.Context;
 import android.content.Intent;
 import android.graphics.Color;
 import android.os.Bundle;
@@ -21,6 +24,7 @@ import android.widget.TextView;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.Callable;
 
 /**
  * This activity is based on the code at
@@ -40,6 +44,22 @@ public class MainActivity extends ActionBarActivity implements android.support.v
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        /** Alarms set by older versions of the app are cancelled and the next alarm is set */
+        final Context appContext = getApplicationContext();
+        new AsyncTaskBox().submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                AlarmScheduler.upgradeLegacyAlarms(appContext);
+                return null;
+            }
+        }, null);
+
+        /** Old histories are rolled up into daily totals in the background */
+        HistoryCompactionService.start(this);
+
+        /** Tasks and alarms are read into memory before the tabs ask for them */
+        new TaskBox().preload(this);
+
         tabsviewPager = (ViewPager) findViewById(R.id.tabspager);
 
         mTabsAdapter = new TabsAdapter(getSupportFragmentManager());
@@ -114,6 +134,7 @@ public class MainActivity extends ActionBarActivity implements android.support.v
     /** Inflate the menu; this adds items to the action bar if it is present */
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_main, menu);
+        menu.findItem(R.id.action_notification_alerts).setChecked(NotificationAlerts.isEnabled(this));
         return true;
     }
 
@@ -141,6 +162,13 @@ public class MainActivity extends ActionBarActivity implements android.support.v
             return true;
         }
 
+        if (id == R.id.action_notification_alerts) {
+            /** Alarms going off from now on are shown the chosen way */
+            item.setChecked(!item.isChecked());
+            NotificationAlerts.setEnabled(this, item.isChecked());
+            return true;
+        }
+
         return super.onOptionsItemSelected(item);
     }
 
@@ -162,19 +190,16 @@ public class MainActivity extends ActionBarActivity implements android.support.v
     public void sendAdd() {
         Intent intent = new Intent(this, AddActivity.class);
         startActivity(intent);
-        finish();
     }
 
     public void sendSetting() {
         Intent intent = new Intent(this, ScheduleActivity.class);
         startActivity(intent);
-        finish();
     }
 
     public void sendEdit() {
         Intent intent = new Intent(this, TaskBoxActivity.class);
         startActivity(intent);
-        finish();
     }
 
     @Override
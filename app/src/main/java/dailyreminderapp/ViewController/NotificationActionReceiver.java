@@ -0,0 +1,65 @@
+package dailyreminderapp.ViewController;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import dailyreminderapp.Model.AsyncTaskBox;
+import dailyreminderapp.Model.TaskBox;
+
+/**
+ * Answers the Done, Snooze and Not Yet actions of the notifications NotificationAlerts shows,
+ * as the buttons of AlertAlarm do but without starting an activity. The notification is taken
+ * away at once; the history or the snooze is stored in the background while the broadcast
+ * is kept going, and finished even if storing them fails.
+ */
+public class NotificationActionReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "NotificationAction";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final long receivedAt = AlertTiming.now();
+        final Context appContext = context.getApplicationContext();
+        final String action = intent.getAction();
+        final List<String> taskNames = Collections.singletonList(NotificationAlerts.getTaskName(intent));
+
+        NotificationAlerts.cancel(appContext, taskNames.get(0));
+        if (!NotificationAlerts.ACTION_DONE.equals(action) && !NotificationAlerts.ACTION_SNOOZE.equals(action)) {
+            /** Not Yet only takes the notification away */
+            AlertTiming.logAction(action, receivedAt);
+            return;
+        }
+
+        final PendingResult result = goAsync();
+        new AsyncTaskBox().submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                try {
+                    if (NotificationAlerts.ACTION_DONE.equals(action))
+                        new TaskBox().addToHistory(appContext, AlertActivity.newHistories(taskNames, Calendar.getInstance()));
+                    else
+                        AlarmScheduler.snoozeNow(appContext, taskNames, System.currentTimeMillis());
+                } catch (RuntimeException e) {
+                    Log.e(TAG, action + ": could not store it for " + taskNames.get(0), e);
+                }
+                return null;
+            }
+        }, new AsyncTaskBox.Callback<Void>() {
+            @Override
+            public void onResult(Void nothing) {
+                try {
+                    AlertTiming.logAction(action, receivedAt);
+                } finally {
+                    result.finish();
+                }
+            }
+        });
+    }
+}
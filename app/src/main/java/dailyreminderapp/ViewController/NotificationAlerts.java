@@ -0,0 +1,91 @@
+package dailyreminderapp.ViewController;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+
+import java.util.Collections;
+import java.util.List;
+
+import teamqitalach.taskapp.R;
+
+/**
+ * Shows the tasks due as notifications instead of opening AlertActivity, when the user has
+ * chosen to. Each task gets a notification of its own with Done, Snooze and Not Yet actions,
+ * which are answered by NotificationActionReceiver without starting an activity. Tapping the
+ * notification opens AlertActivity for the task.
+ */
+public class NotificationAlerts {
+
+    static final String ACTION_DONE = "dailyreminderapp.action.DONE";
+    static final String ACTION_SNOOZE = "dailyreminderapp.action.SNOOZE";
+    static final String ACTION_NOT_YET = "dailyreminderapp.action.NOT_YET";
+
+    private static final String PREFERENCES = "notification_alerts";
+    private static final String PREF_ENABLED = "enabled";
+
+    // Notifications are told apart by their tag, the task name
+    private static final int NOTIFICATION_ID = 1;
+    private static final String URI_SCHEME = "task";
+
+    /** @return whether alerts are shown as notifications rather than by AlertActivity */
+    public static boolean isEnabled(Context context) {
+        return context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE)
+                .getBoolean(PREF_ENABLED, false);
+    }
+
+    public static void setEnabled(Context context, boolean enabled) {
+        context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).edit()
+                .putBoolean(PREF_ENABLED, enabled).commit();
+    }
+
+    /** Shows a notification for each task, replacing the one shown for it before */
+    static void show(Context context, List<String> taskNames) {
+        NotificationManagerCompat manager = NotificationManagerCompat.from(context);
+        for (String taskName : taskNames) {
+            /** Opens the alert of the task, the way the activity path would have */
+            Intent open = AlertActivity.newIntent(context, Collections.singletonList(taskName));
+            open.setData(getUri(taskName));
+
+            Notification notification = new NotificationCompat.Builder(context)
+                    .setSmallIcon(R.mipmap.ic_launcher)
+                    .setContentTitle("TaskApp")
+                    .setContentText("Did you do your this task :" + taskName + "?")
+                    .setPriority(NotificationCompat.PRIORITY_HIGH)
+                    .setCategory(NotificationCompat.CATEGORY_ALARM)
+                    .setDefaults(Notification.DEFAULT_SOUND | Notification.DEFAULT_LIGHTS)
+                    .setWhen(System.currentTimeMillis())
+                    .setAutoCancel(true)
+                    .setContentIntent(PendingIntent.getActivity(context, 0, open, PendingIntent.FLAG_UPDATE_CURRENT))
+                    .addAction(0, "Done", getAction(context, ACTION_DONE, taskName))
+                    .addAction(0, "Snooze", getAction(context, ACTION_SNOOZE, taskName))
+                    .addAction(0, "Not Yet", getAction(context, ACTION_NOT_YET, taskName))
+                    .build();
+            manager.notify(taskName, NOTIFICATION_ID, notification);
+        }
+    }
+
+    /** Takes the notification of a task away, if it is shown */
+    static void cancel(Context context, String taskName) {
+        NotificationManagerCompat.from(context).cancel(taskName, NOTIFICATION_ID);
+    }
+
+    /** @return the name of the task an action of show() is for */
+    static String getTaskName(Intent intent) {
+        return intent.getData().getSchemeSpecificPart();
+    }
+
+    /** The task is in the data of the intent, so each task and action gets a pendingIntent of its own */
+    private static PendingIntent getAction(Context context, String action, String taskName) {
+        Intent intent = new Intent(action, getUri(taskName), context, NotificationActionReceiver.class);
+        return PendingIntent.getBroadcast(context, 0, intent, 0);
+    }
+
+    private static Uri getUri(String taskName) {
+        return Uri.fromParts(URI_SCHEME, taskName, null);
+    }
+}
@@ -0,0 +1,60 @@
+package dailyreminderapp.ViewController;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import dailyreminderapp.Model.AsyncTaskBox;
+
+/**
+ * Woken when the device has started and when the clock or the timezone is changed. The
+ * alarmManager alarm is lost when the device restarts, and a clock or timezone change can
+ * make another alarm the next to go off, so AlarmScheduler works out the next alarm again
+ * and sets the alarmManager alarm if it is not right anymore. Snoozes that should have gone
+ * off while the device was off are shown now. As in AlarmReceiver, the broadcast is finished
+ * even if reading the model fails.
+ */
+public class RescheduleReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "RescheduleReceiver";
+
+    @Override
+    public void onReceive(Context context, final Intent intent) {
+        final long wokeAt = AlertTiming.now();
+        final Context appContext = context.getApplicationContext();
+        final PendingResult result = goAsync();
+
+        new AsyncTaskBox().submit(new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                long now = System.currentTimeMillis();
+                try {
+                    List<String> overdue = AlarmScheduler.takeOverdueSnoozes(appContext, now);
+                    boolean changed = AlarmScheduler.schedule(appContext, now);
+                    Log.i(TAG, intent.getAction() + (changed ? ": alarm set again" : ": alarm already right")
+                            + ", " + overdue.size() + " overdue snoozes");
+                    return overdue;
+                } catch (RuntimeException e) {
+                    Log.e(TAG, intent.getAction() + ": could not read the model", e);
+                    AlarmReceiver.scheduleAfterError(appContext, now);
+                    return Collections.emptyList();
+                }
+            }
+        }, new AsyncTaskBox.Callback<List<String>>() {
+            @Override
+            public void onResult(List<String> overdue) {
+                try {
+                    if (!overdue.isEmpty())
+                        AlarmReceiver.showAlerts(appContext, overdue, wokeAt);
+                } finally {
+                    result.finish();
+                }
+            }
+        });
+    }
+}
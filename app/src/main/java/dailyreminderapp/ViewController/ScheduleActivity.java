@@ -1,6 +1,5 @@
 package dailyreminderapp.ViewController;
 
-import android.content.Intent;
 import android.graphics.Color;
 import android.graphics.Typeface;
 import android.support.v7.app.ActionBarActivity;
@@ -12,12 +11,12 @@ import android.widget.TableLayout;
 import android.widget.TableRow;
 import android.widget.TextView;
 
-import java.net.URISyntaxException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import dailyreminderapp.Model.Alarm;
-import dailyreminderapp.Model.TaskBox;
+import dailyreminderapp.Model.AsyncTaskBox;
 
 import teamqitalach.taskapp.R;
 
@@ -29,6 +28,8 @@ import teamqitalach.taskapp.R;
 
 public class ScheduleActivity extends ActionBarActivity {
 
+    private Future<List<List<Alarm>>> loading; // The alarms being read for the table
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -37,11 +38,27 @@ public class ScheduleActivity extends ActionBarActivity {
         getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         getSupportActionBar().setTitle("Week at a Glance");
 
-        TableLayout stk = (TableLayout) findViewById(R.id.table_calendar);
+        loading = new AsyncTaskBox().getAlarmsOfWeek(getApplicationContext(),
+                new AsyncTaskBox.Callback<List<List<Alarm>>>() {
+                    @Override
+                    public void onResult(List<List<Alarm>> week) {
+                        showWeek(week);
+                    }
+                });
+    }
 
-        TaskBox taskBox = new TaskBox();
+    @Override
+    protected void onDestroy() {
+        loading.cancel(false);
+        super.onDestroy();
+    }
 
-        List<Alarm> alarms = null;
+    /**
+     * Adds a header row for each day and a row for each of its alarms
+     * @param week the alarms of each day, index 0 is Sunday
+     */
+    private void showWeek(List<List<Alarm>> week) {
+        TableLayout stk = (TableLayout) findViewById(R.id.table_calendar);
 
         List<String> days = Arrays.asList("Sunday", "Monday", "Tuesday",
                 "Wednesday", "Thursday", "Friday", "Saturday");
@@ -69,11 +86,7 @@ public class ScheduleActivity extends ActionBarActivity {
             params.span = 2;
             headerText.setLayoutParams(params);
 
-            try {
-                alarms = taskBox.getAlarms(this, i);
-            } catch (URISyntaxException e) {
-                e.printStackTrace();
-            }
+            List<Alarm> alarms = week.get(i-1);
 
             if(alarms.size() != 0) {
                 for(Alarm alarm: alarms) {
@@ -126,16 +139,7 @@ public class ScheduleActivity extends ActionBarActivity {
      * as you specify a parent activity in AndroidManifest.xml.
      */
     public boolean onOptionsItemSelected(MenuItem item) {
-        Intent returnHome = new Intent(getBaseContext(), MainActivity.class);
-        startActivity(returnHome);
         finish();
         return super.onOptionsItemSelected(item);
     }
-
-    @Override
-    public void onBackPressed() {
-        Intent returnHome = new Intent(getBaseContext(), MainActivity.class);
-        startActivity(returnHome);
-        finish();
-    }
 }
\ No newline at end of file
@@ -7,17 +7,18 @@ import android.view.Menu;
 import android.view.MenuItem;
 
 import dailyreminderapp.Model.Alarm;
-import dailyreminderapp.Model.Task;
+import dailyreminderapp.Model.AsyncTaskBox;
+import dailyreminderapp.Model.ModelEvents;
 import dailyreminderapp.Model.TaskBox;
 
-import dailyreminderapp.Model.TaskComparator;
 import dailyreminderapp.ViewController.adapter.ExpandableListAdapter;
 
-import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import android.view.View;
 import android.widget.ExpandableListView;
@@ -31,16 +32,75 @@ import teamqitalach.taskapp.R;
 /**
  * This activity handles the view and controller of the taskbox page, where
  * the user can view alarms by tasks and edit or delete an alarm
+ * The list is read once, after that only the task of an added or removed alarm is updated.
  */
 public class TaskBoxActivity extends ActionBarActivity {
     ExpandableListAdapter listAdapter;
     ExpandableListView expListView;
     List<String> listDataHeader;
     HashMap<String, List<String>> listDataChild;
-    // This data structure allows us to get the ids of the alarms we want to edit
-    // and store them in the tempId in the task box model. The structure is similar
+    // This data structure allows us to get the id of the alarm we want to edit
+    // and store it in the tempId in the task box model. The structure is similar
     // to the struture of listDataChild.
-    List<List<List<Long>>> alarmIDData;
+    List<List<Long>> alarmIDData;
+    private Future<Map<String, List<Alarm>>> loading; // The tasks and alarms being read for the list
+    // The alarms of each task sorted by time of day, null until read. Changes before they
+    // are read are ignored, they were stored before the read ran so it sees them.
+    private Map<String, List<Alarm>> alarmsByTask;
+
+    private final ModelEvents.Listener listener = new ModelEvents.Listener() {
+        @Override
+        public void onAlarmAdded(Alarm alarm) {
+            if (alarmsByTask == null)
+                return;
+
+            String name = alarm.getTaskName();
+            List<Alarm> alarms = alarmsByTask.get(name);
+            if (alarms == null) { // A new task, listed at its place by name
+                alarms = new ArrayList<Alarm>();
+                alarmsByTask.put(name, alarms);
+                int group = -Collections.binarySearch(listDataHeader, name) - 1;
+                listDataHeader.add(group, name);
+                alarmIDData.add(group, new ArrayList<Long>());
+            }
+
+            int index = Collections.binarySearch(alarms, alarm);
+            alarms.add(index < 0 ? -index - 1 : index, alarm);
+            updateGroup(name);
+        }
+
+        @Override
+        public void onAlarmRemoved(Alarm alarm) {
+            if (alarmsByTask == null || !alarmsByTask.containsKey(alarm.getTaskName()))
+                return;
+
+            List<Alarm> alarms = alarmsByTask.get(alarm.getTaskName());
+            for (int i = 0; i < alarms.size(); i++) {
+                if (alarms.get(i).getId() == alarm.getId()) {
+                    alarms.remove(i);
+                    break;
+                }
+            }
+            updateGroup(alarm.getTaskName());
+        }
+
+        @Override
+        public void onTaskRemoved(String taskName) {
+            if (alarmsByTask == null || alarmsByTask.remove(taskName) == null)
+                return;
+
+            int group = listDataHeader.indexOf(taskName);
+            listDataHeader.remove(group);
+            alarmIDData.remove(group);
+            listDataChild.remove(taskName);
+            listAdapter.notifyDataSetChanged();
+        }
+
+        @Override
+        public void onReset() {
+            load();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -51,14 +111,8 @@ public class TaskBoxActivity extends ActionBarActivity {
 
         expListView = (ExpandableListView) findViewById(R.id.lvExp);
 
-        try {
-            prepareListData();
-        } catch (URISyntaxException e) {
-            e.printStackTrace();
-        }
-
-        listAdapter = new ExpandableListAdapter(this, listDataHeader, listDataChild);
-        expListView.setAdapter(listAdapter);
+        load();
+        ModelEvents.getInstance().register(listener);
 
         expListView.setOnGroupExpandListener(new OnGroupExpandListener() {
             @Override
@@ -84,16 +138,23 @@ public class TaskBoxActivity extends ActionBarActivity {
             public boolean onChildClick(ExpandableListView parent, View v,
                                         int groupPosition, int childPosition, long id) {
                 TaskBox taskBox = new TaskBox();
-                taskBox.setTempIds(alarmIDData.get(groupPosition).get(childPosition));
+                taskBox.setTempId(alarmIDData.get(groupPosition).get(childPosition));
 
+                // This page stays below the edit page and is updated by the changes made there
                 Intent intent = new Intent(getApplicationContext(), EditActivity.class);
                 startActivity(intent);
-                finish();
                 return false;
             }
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        ModelEvents.getInstance().unregister(listener);
+        loading.cancel(false);
+        super.onDestroy();
+    }
+
     @Override
     /** Inflate the menu; this adds items to the action bar if it is present */
     public boolean onCreateOptionsMenu(Menu menu) {
@@ -108,40 +169,70 @@ public class TaskBoxActivity extends ActionBarActivity {
      * as you specify a parent activity in AndroidManifest.xml.
      */
     public boolean onOptionsItemSelected(MenuItem item) {
-        Intent returnHome = new Intent(getBaseContext(), MainActivity.class);
-        startActivity(returnHome);
-        finish();
+        finish(); // Back to the home page below
         return super.onOptionsItemSelected(item);
     }
 
+    /** Reads every task and its alarms and lists them instead of what is listed now */
+    private void load() {
+        if (loading != null)
+            loading.cancel(false);
+        alarmsByTask = null;
+        loading = new AsyncTaskBox().getAlarmsByTask(getApplicationContext(),
+                new AsyncTaskBox.Callback<Map<String, List<Alarm>>>() {
+                    @Override
+                    public void onResult(Map<String, List<Alarm>> alarms) {
+                        alarmsByTask = alarms;
+                        prepareListData(alarms);
+
+                        listAdapter = new ExpandableListAdapter(TaskBoxActivity.this, listDataHeader, listDataChild);
+                        expListView.setAdapter(listAdapter);
+                    }
+                });
+    }
+
 
-    /** Preparing the list data */
-    private void prepareListData() throws URISyntaxException {
+    /**
+     * Preparing the list data
+     * @param alarmsByTask every task with its alarms, in the order they are listed
+     */
+    private void prepareListData(Map<String, List<Alarm>> alarmsByTask) {
         listDataHeader = new ArrayList<String>();
         listDataChild = new HashMap<String, List<String>>();
-        alarmIDData = new ArrayList<List<List<Long>>>();
-
-        TaskBox taskbox = new TaskBox();
-        List<Task> tasks = taskbox.getTasks(this);
-        Collections.sort(tasks, new TaskComparator());
+        alarmIDData = new ArrayList<List<Long>>();
 
-        for (Task task: tasks){
-            String name = task.getTaskName();
+        for (Map.Entry<String, List<Alarm>> entry: alarmsByTask.entrySet()){
+            String name = entry.getKey();
             listDataHeader.add(name);
             List<String> times = new ArrayList<String>();
-            List<Alarm> alarms = taskbox.getAlarmByTask(this.getBaseContext(), name);
-            List<List<Long>> ids = new ArrayList<List<Long>>();
+            List<Alarm> alarms = entry.getValue();
+            List<Long> ids = new ArrayList<Long>();
 
             for (Alarm alarm :alarms){
                 String time = alarm.getStringTime() + daysList(alarm);
                 times.add(time);
-                ids.add(alarm.getIds());
+                ids.add(alarm.getId());
             }
             alarmIDData.add(ids);
             listDataChild.put(name, times);
         }
     }
 
+    /** Lists the alarms of one task again, after one of them was added or removed */
+    private void updateGroup(String name) {
+        int group = listDataHeader.indexOf(name);
+        List<String> times = new ArrayList<String>();
+        List<Long> ids = alarmIDData.get(group);
+        ids.clear();
+
+        for (Alarm alarm : alarmsByTask.get(name)){
+            times.add(alarm.getStringTime() + daysList(alarm));
+            ids.add(alarm.getId());
+        }
+        listDataChild.put(name, times);
+        listAdapter.notifyDataSetChanged();
+    }
+
     /**
      * Helper function to obtain a string of the days of the week
      * that can be used as a boolean list
@@ -156,11 +247,4 @@ public class TaskBoxActivity extends ActionBarActivity {
         }
         return days;
     }
-
-    @Override
-    public void onBackPressed() {
-        Intent returnHome = new Intent(getBaseContext(), MainActivity.class);
-        startActivity(returnHome);
-        finish();
-    }
 }
\ No newline at end of file
@@ -1,24 +1,6 @@
 package dailyreminderapp.ViewController;
 
-import android.graphics.Color;
-import android.graphics.Typeface;
-import android.os.Bundle;
-import android.support.v4.app.Fragment;
-import android.view.Gravity;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.view.ViewGroup;
-import android.widget.TableLayout;
-import android.widget.TableRow;
-import android.widget.TextView;
-
-import java.net.URISyntaxException;
 import java.util.Calendar;
-import java.util.Collections;
-import java.util.List;
-
-import dailyreminderapp.Model.Alarm;
-import dailyreminderapp.Model.TaskBox;
 
 import teamqitalach.taskapp.R;
 
@@ -29,73 +11,25 @@ import teamqitalach.taskapp.R;
  * This fragment handles the view and controller of the today tab on home screen
  */
 
-public class TodayFragment extends Fragment {
+public class TodayFragment extends DayFragment {
 
     @Override
-    public View onCreateView(LayoutInflater inflater, ViewGroup container,
-                             Bundle savedInstanceState) {
-
-        View rootView = inflater.inflate(R.layout.fragment_today, container, false);
-
-        TableLayout stk = (TableLayout) rootView.findViewById(R.id.table_today);
-
-        Typeface lightFont = Typeface.createFromAsset(container.getContext().getAssets(), "fonts/Roboto-Light.ttf");
-
-        TaskBox taskBox = new TaskBox();
-
-        Calendar calendar = Calendar.getInstance();
-        int day = calendar.get(Calendar.DAY_OF_WEEK);
-        List<Alarm> alarms = Collections.emptyList();
-
-        try {
-            alarms = taskBox.getAlarms(container.getContext(), day);
-        } catch (URISyntaxException e) {
-            e.printStackTrace();
-        }
-
-        if(alarms.size() != 0) {
-            for(Alarm alarm: alarms) {
-                TableRow tbrow = new TableRow(container.getContext());
-
-                TextView t1v = new TextView(container.getContext());
-                t1v.setText(alarm.getTaskName());
-                t1v.setTextColor(Color.WHITE);
-                t1v.setGravity(Gravity.CENTER);
-                t1v.setPadding(30, 30, 30, 30);
-                t1v.setTextSize(25);
-                t1v.setTypeface(lightFont);
-                t1v.setMaxEms(6);
-
-                tbrow.addView(t1v);
-
-                TextView t2v = new TextView(container.getContext());
-
-                String time = alarm.getStringTime();
-                t2v.setText(time);
-                t2v.setTextColor(Color.WHITE);
-                t2v.setGravity(Gravity.CENTER);
-                t2v.setPadding(30, 30, 30, 30);
-                t2v.setTextSize(25);
-                t2v.setTypeface(lightFont);
-                tbrow.addView(t2v);
+    protected int getLayout() {
+        return R.layout.fragment_today;
+    }
 
-                stk.addView(tbrow);
-            }
-        } else {
-            TableRow tbrow = new TableRow(container.getContext());
+    @Override
+    protected int getTable() {
+        return R.id.table_today;
+    }
 
-            TextView t1v = new TextView(container.getContext());
-            t1v.setText("You don't have any alarms for Today!");
-            t1v.setTextColor(Color.WHITE);
-            t1v.setGravity(Gravity.CENTER);
-            t1v.setPadding(30, 30, 30, 30);
-            t1v.setTextSize(25);
-            t1v.setTypeface(lightFont);
-            t1v.setMaxEms(10);
-            tbrow.addView(t1v);
+    @Override
+    protected int getDay() {
+        return Calendar.getInstance().get(Calendar.DAY_OF_WEEK);
+    }
 
-            stk.addView(tbrow);
-        }
-        return rootView;
+    @Override
+    protected String getEmptyText() {
+        return "You don't have any alarms for Today!";
     }
 }
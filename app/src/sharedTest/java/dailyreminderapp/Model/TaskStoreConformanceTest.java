@@ -0,0 +1,366 @@
+package dailyreminderapp.Model;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The behaviour every TaskStore has to share, run against each implementation by a subclass
+ * that says how to make a new, empty store. It only uses plain Java, so it runs on a JVM
+ * (InMemoryTaskStoreTest) as well as on a device (SQLiteTaskStoreTest).
+ */
+public abstract class TaskStoreConformanceTest extends TestCase {
+
+    protected TaskStore store;
+
+    /** @return a new store with nothing in it */
+    protected abstract TaskStore newStore() throws Exception;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        store = newStore();
+    }
+
+    // ############################## tasks ####################################### //
+
+    public void testCreatedTaskIsFoundByName() {
+        long taskId = createTask("Vitamins");
+
+        assertTrue(taskId > 0);
+        assertEquals(taskId, store.getTaskId("Vitamins"));
+        Task task = store.getTaskByName("Vitamins");
+        assertEquals(taskId, task.getTaskId());
+        assertEquals("Vitamins", task.getTaskName());
+    }
+
+    public void testMissingTask() {
+        assertEquals(-1, store.getTaskId("Nothing"));
+        Task task = store.getTaskByName("Nothing");
+        assertEquals(0, task.getTaskId());
+        assertNull(task.getTaskName());
+    }
+
+    public void testTaskNamesAreUnique() {
+        createTask("Vitamins");
+
+        assertEquals(-1, createTask("Vitamins"));
+        assertEquals(1, store.getAllTasks().size());
+    }
+
+    public void testAllTasksInCreationOrder() {
+        createTask("B");
+        createTask("A");
+        createTask("C");
+
+        List<String> names = new ArrayList<>();
+        for (Task task : store.getAllTasks())
+            names.add(task.getTaskName());
+        assertEquals(Arrays.asList("B", "A", "C"), names);
+    }
+
+    public void testDeletingATaskDeletesItsAlarmsOnly() {
+        long vitamins = createTask("Vitamins");
+        long walk = createTask("Walk");
+        Alarm morning = createAlarm(vitamins, "Vitamins", 8, 0, 0x7f);
+        Alarm evening = createAlarm(walk, "Walk", 18, 0, 0x7f);
+
+        store.deleteTask("Vitamins");
+
+        assertEquals(-1, store.getTaskId("Vitamins"));
+        assertNull(store.getAlarmById(morning.getId()));
+        assertNotNull(store.getAlarmById(evening.getId()));
+        assertEquals(1, store.getAllTasks().size());
+    }
+
+    public void testDeleteTasks() {
+        createTask("A");
+        createTask("B");
+        createTask("C");
+
+        store.deleteTasks(Arrays.asList("A", "C", "Missing"));
+
+        assertEquals(1, store.getAllTasks().size());
+        assertEquals("B", store.getAllTasks().get(0).getTaskName());
+    }
+
+    // ############################## alarms ###################################### //
+
+    public void testCreatedAlarmIsFoundById() {
+        long taskId = createTask("Vitamins");
+        Alarm alarm = createAlarm(taskId, "Vitamins", 8, 30, Alarm.dayBit(Calendar.MONDAY));
+
+        assertTrue(alarm.getId() > 0);
+        Alarm stored = store.getAlarmById(alarm.getId());
+        assertEquals(alarm.getId(), stored.getId());
+        assertEquals(8, stored.getHour());
+        assertEquals(30, stored.getMinute());
+        assertEquals("Vitamins", stored.getTaskName());
+        assertEquals(Alarm.dayBit(Calendar.MONDAY), stored.getDaysMask());
+    }
+
+    public void testMissingAlarm() {
+        assertNull(store.getAlarmById(12345));
+    }
+
+    public void testCreateAlarmsSetsDistinctIds() {
+        long taskId = createTask("Vitamins");
+        List<Alarm> alarms = Arrays.asList(newAlarm("Vitamins", 8, 0, 1), newAlarm("Vitamins", 9, 0, 1),
+                newAlarm("Vitamins", 10, 0, 1));
+
+        store.createAlarms(alarms, taskId);
+
+        assertEquals(3, store.getAllAlarms().size());
+        assertTrue(alarms.get(0).getId() != alarms.get(1).getId());
+        assertTrue(alarms.get(1).getId() != alarms.get(2).getId());
+        assertEquals(9, store.getAlarmById(alarms.get(1).getId()).getHour());
+    }
+
+    public void testAlarmsOfATaskSortedByTime() {
+        long vitamins = createTask("Vitamins");
+        long walk = createTask("Walk");
+        createAlarm(vitamins, "Vitamins", 20, 0, 1);
+        createAlarm(walk, "Walk", 7, 0, 1);
+        createAlarm(vitamins, "Vitamins", 8, 15, 1);
+        createAlarm(vitamins, "Vitamins", 8, 5, 1);
+
+        List<Alarm> alarms = store.getAllAlarmsByTask("Vitamins");
+
+        assertEquals(3, alarms.size());
+        assertEquals(5, alarms.get(0).getMinute());
+        assertEquals(15, alarms.get(1).getMinute());
+        assertEquals(20, alarms.get(2).getHour());
+        assertTrue(store.getAllAlarmsByTask("Missing").isEmpty());
+    }
+
+    public void testAlarmsByDay() {
+        long taskId = createTask("Vitamins");
+        Alarm weekdays = createAlarm(taskId, "Vitamins", 8, 0, 0x3e);
+        Alarm sunday = createAlarm(taskId, "Vitamins", 10, 0, Alarm.dayBit(Calendar.SUNDAY));
+
+        assertEquals(Collections.singletonList(sunday.getId()), ids(store.getAlarmsByDay(Calendar.SUNDAY)));
+        assertEquals(Collections.singletonList(weekdays.getId()), ids(store.getAlarmsByDay(Calendar.FRIDAY)));
+        assertTrue(store.getAlarmsByDay(Calendar.SATURDAY).isEmpty());
+    }
+
+    public void testDeleteAlarm() {
+        long taskId = createTask("Vitamins");
+        Alarm first = createAlarm(taskId, "Vitamins", 8, 0, 1);
+        Alarm second = createAlarm(taskId, "Vitamins", 9, 0, 1);
+
+        store.deleteAlarm(first.getId());
+
+        assertNull(store.getAlarmById(first.getId()));
+        assertEquals(Collections.singletonList(second.getId()), ids(store.getAllAlarmsByTask("Vitamins")));
+        assertEquals(taskId, store.getTaskId("Vitamins"));
+    }
+
+    public void testReturnedAlarmsAreCopies() {
+        long taskId = createTask("Vitamins");
+        Alarm alarm = createAlarm(taskId, "Vitamins", 8, 0, 1);
+
+        alarm.setHour(23);
+        store.getAlarmById(alarm.getId()).setHour(22);
+
+        assertEquals(8, store.getAlarmById(alarm.getId()).getHour());
+    }
+
+    // ############################## histories ################################### //
+
+    public void testHistoryInCreationOrder() {
+        createHistory("A", 300);
+        createHistory("B", 100);
+
+        List<History> histories = store.getHistory();
+
+        assertEquals(2, histories.size());
+        assertEquals("A", histories.get(0).getTaskName());
+        assertEquals(300, histories.get(0).getDoneAt());
+        assertTrue(histories.get(0).getId() < histories.get(1).getId());
+    }
+
+    public void testCreateHistoriesTogether() {
+        createTask("A");
+        List<History> histories = new ArrayList<>();
+        for (String taskName : new String[]{"A", "B"}) {
+            History history = new History();
+            history.setTaskName(taskName);
+            history.setDoneAt(1000);
+            histories.add(history);
+        }
+
+        store.createHistories(histories);
+
+        assertEquals(Arrays.asList(1000L, 1000L), doneAts(store.getHistory()));
+        assertEquals(1, store.getHistoryByTaskBetween("A", 0, 2000).size());
+    }
+
+    public void testHistoryPagesNewestFirst() {
+        for (int i = 0; i < 5; i++)
+            createHistory("Vitamins", i);
+
+        List<History> first = store.getHistoryPage(Long.MAX_VALUE, 2);
+        List<History> second = store.getHistoryPage(first.get(1).getId(), 2);
+        List<History> third = store.getHistoryPage(second.get(1).getId(), 2);
+
+        assertEquals(Arrays.asList(4L, 3L), doneAts(first));
+        assertEquals(Arrays.asList(2L, 1L), doneAts(second));
+        assertEquals(Collections.singletonList(0L), doneAts(third));
+        assertTrue(store.getHistoryPage(third.get(0).getId(), 2).isEmpty());
+    }
+
+    public void testHistoryBetweenIsHalfOpenAndOldestFirst() {
+        createHistory("A", 30);
+        createHistory("A", 10);
+        createHistory("B", 20);
+        createHistory("B", 40);
+
+        assertEquals(Arrays.asList(10L, 20L, 30L), doneAts(store.getHistoryBetween(10, 40)));
+    }
+
+    public void testHistoryOfATask() {
+        createTask("A");
+        createTask("B");
+        createHistory("A", 30);
+        createHistory("B", 20);
+        createHistory("A", 10);
+        createHistory("A", 50);
+
+        assertEquals(Arrays.asList(10L, 30L), doneAts(store.getHistoryByTaskBetween("A", 0, 50)));
+        assertTrue(store.getHistoryByTaskBetween("Missing", 0, 50).isEmpty());
+    }
+
+    public void testHistoryOutlivesItsTask() {
+        createTask("A");
+        createHistory("A", 10);
+
+        store.deleteTask("A");
+
+        assertEquals(1, store.getHistory().size());
+        assertTrue(store.getHistoryByTaskBetween("A", 0, 100).isEmpty());
+    }
+
+    public void testCompactHistoryInBatches() {
+        for (int i = 0; i < 5; i++)
+            createHistory("Vitamins", i * 1000L);
+
+        assertEquals(2, store.compactHistory(2500, 2));
+        assertEquals(Arrays.asList(2000L, 3000L, 4000L), doneAts(store.getHistory()));
+        assertEquals(1, store.compactHistory(2500, 2));
+        assertEquals(0, store.compactHistory(2500, 2));
+        assertEquals(Arrays.asList(3000L, 4000L), doneAts(store.getHistory()));
+    }
+
+    // ############################## snoozes ##################################### //
+
+    public void testSnoozesSoonestFirst() {
+        createTask("A");
+        createTask("B");
+        store.createSnooze(new Snooze("A", 3000));
+        store.createSnooze(new Snooze("B", 1000));
+        store.createSnooze(new Snooze("A", 2000));
+
+        assertEquals(Arrays.asList("B@1000", "A@2000", "A@3000"), snoozes(store.getAllSnoozes()));
+    }
+
+    public void testSnoozeToTheSameTimeIsStoredOnce() {
+        createTask("A");
+        createTask("B");
+        store.createSnooze(new Snooze("A", 1000));
+        store.createSnooze(new Snooze("A", 1000));
+        store.createSnooze(new Snooze("B", 1000));
+
+        List<String> snoozes = snoozes(store.getAllSnoozes());
+        Collections.sort(snoozes);
+        assertEquals(Arrays.asList("A@1000", "B@1000"), snoozes);
+    }
+
+    public void testSnoozeOfAMissingTaskIsNotStored() {
+        store.createSnooze(new Snooze("Nothing", 1000));
+
+        assertTrue(store.getAllSnoozes().isEmpty());
+    }
+
+    public void testTakeSnoozesUntil() {
+        createTask("A");
+        for (long fireAt = 1000; fireAt <= 4000; fireAt += 1000)
+            store.createSnooze(new Snooze("A", fireAt));
+
+        assertEquals(Arrays.asList("A@1000", "A@2000"), snoozes(store.takeSnoozesUntil(2000)));
+        assertTrue(store.takeSnoozesUntil(2000).isEmpty());
+        assertEquals(Arrays.asList("A@3000", "A@4000"), snoozes(store.getAllSnoozes()));
+    }
+
+    public void testDeletingATaskDeletesItsSnoozes() {
+        createTask("A");
+        createTask("B");
+        store.createSnooze(new Snooze("A", 1000));
+        store.createSnooze(new Snooze("B", 2000));
+
+        store.deleteTask("A");
+
+        assertEquals(Arrays.asList("B@2000"), snoozes(store.getAllSnoozes()));
+    }
+
+    // ############################## upgrades #################################### //
+
+    public void testNewStoreHasNoLegacyRequestCodes() {
+        assertTrue(store.takeLegacyRequestCodes().isEmpty());
+    }
+
+    // ############################## helpers ##################################### //
+
+    private long createTask(String name) {
+        Task task = new Task();
+        task.setTaskName(name);
+        return store.createTask(task);
+    }
+
+    private static Alarm newAlarm(String taskName, int hour, int minute, int daysMask) {
+        Alarm alarm = new Alarm();
+        alarm.setTaskName(taskName);
+        alarm.setHour(hour);
+        alarm.setMinute(minute);
+        alarm.setDaysMask(daysMask);
+        return alarm;
+    }
+
+    private Alarm createAlarm(long taskId, String taskName, int hour, int minute, int daysMask) {
+        Alarm alarm = newAlarm(taskName, hour, minute, daysMask);
+        store.createAlarm(alarm, taskId);
+        return alarm;
+    }
+
+    private void createHistory(String taskName, long doneAt) {
+        History history = new History();
+        history.setTaskName(taskName);
+        history.setDateString("Jan 1, 1970");
+        history.setDoneAt(doneAt);
+        store.createHistory(history);
+    }
+
+    private static List<Long> ids(List<Alarm> alarms) {
+        List<Long> ids = new ArrayList<>();
+        for (Alarm alarm : alarms)
+            ids.add(alarm.getId());
+        return ids;
+    }
+
+    private static List<String> snoozes(List<Snooze> snoozes) {
+        List<String> taskNamesAt = new ArrayList<>();
+        for (Snooze snooze : snoozes)
+            taskNamesAt.add(snooze.getTaskName() + "@" + snooze.getFireAt());
+        return taskNamesAt;
+    }
+
+    private static List<Long> doneAts(List<History> histories) {
+        List<Long> doneAts = new ArrayList<>();
+        for (History history : histories)
+            doneAts.add(history.getDoneAt());
+        return doneAts;
+    }
+}
@@ -0,0 +1,125 @@
+package dailyreminderapp.Model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times merging one-day alarm rows into alarms by time of day, as DbHelper.combineAlarms did
+ * while alarms were stored as one row per day, at 10, 1,000 and 100,000 rows. The rows are
+ * grouped once by matching time strings, as combineAlarms first did, and once through an
+ * array indexed by minute of the day, which makes no strings and needs no Android classes.
+ * Not a test, run it on the JVM with the test classpath:
+ *
+ *     java -cp <test classes> dailyreminderapp.Model.AlarmGroupingBenchmark
+ *
+ * Since alarms are stored as one row with a days_mask the rows are merged once, by the
+ * 4 to 5 migration in SQL, and reads have nothing left to merge.
+ */
+public class AlarmGroupingBenchmark {
+
+    private static final int[] ROWS = {10, 1000, 100000};
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+    private static final long ROUND_NANOS = 1000000000L;
+
+    private static long sink;
+
+    /** One of the ways of grouping timed */
+    private interface Grouping {
+        List<Alarm> group(List<Alarm> rows);
+    }
+
+    public static void main(String[] args) {
+        Grouping byString = new Grouping() {
+            @Override
+            public List<Alarm> group(List<Alarm> rows) {
+                List<String> timesOfDay = new ArrayList<>();
+                List<Alarm> combined = new ArrayList<>();
+                for (Alarm row : rows) {
+                    if (timesOfDay.contains(row.getStringTime())) {
+                        for (Alarm alarm : combined) {
+                            if (alarm.getStringTime().equals(row.getStringTime()))
+                                alarm.setDaysMask(alarm.getDaysMask() | row.getDaysMask());
+                        }
+                    } else {
+                        timesOfDay.add(row.getStringTime());
+                        combined.add(copy(row));
+                    }
+                }
+                return combined;
+            }
+        };
+        Grouping byMinuteOfDay = new Grouping() {
+            @Override
+            public List<Alarm> group(List<Alarm> rows) {
+                Alarm[] byMinute = new Alarm[MINUTES_PER_DAY];
+                List<Alarm> combined = new ArrayList<>();
+                for (Alarm row : rows) {
+                    int minuteOfDay = row.getHour() * 60 + row.getMinute();
+                    Alarm alarm = byMinute[minuteOfDay];
+                    if (alarm != null) {
+                        alarm.setDaysMask(alarm.getDaysMask() | row.getDaysMask());
+                    } else {
+                        byMinute[minuteOfDay] = copy(row);
+                        combined.add(byMinute[minuteOfDay]);
+                    }
+                }
+                return combined;
+            }
+        };
+
+        for (int rows : ROWS) {
+            List<Alarm> dayRows = newRows(rows);
+            if (byString.group(dayRows).size() != byMinuteOfDay.group(dayRows).size())
+                throw new AssertionError("groupings differ at " + rows + " rows");
+
+            time("time strings, " + rows + " rows", byString, dayRows);
+            time("minute of day, " + rows + " rows", byMinuteOfDay, dayRows);
+        }
+        System.out.println("sink: " + sink);
+    }
+
+    /** Rows of one task, each going off on one day at one of the minutes of the day */
+    private static List<Alarm> newRows(int rows) {
+        Random random = new Random(1);
+        List<Alarm> dayRows = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Alarm row = new Alarm();
+            row.setId(i + 1);
+            row.setTaskName("Vitamins");
+            row.setHour(random.nextInt(24));
+            row.setMinute(random.nextInt(60));
+            row.setDaysMask(Alarm.dayBit(1 + random.nextInt(7)));
+            dayRows.add(row);
+        }
+        return dayRows;
+    }
+
+    private static Alarm copy(Alarm row) {
+        Alarm alarm = new Alarm();
+        alarm.setId(row.getId());
+        alarm.setTaskName(row.getTaskName());
+        alarm.setHour(row.getHour());
+        alarm.setMinute(row.getMinute());
+        alarm.setDaysMask(row.getDaysMask());
+        return alarm;
+    }
+
+    private static void time(String name, Grouping grouping, List<Alarm> rows) {
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            int calls = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                sink += grouping.group(rows).size();
+                calls++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < ROUND_NANOS);
+
+            if (round >= WARMUP_ROUNDS)
+                System.out.printf("%s: %.3f us/call%n", name, elapsed / 1e3 / calls);
+        }
+    }
+}
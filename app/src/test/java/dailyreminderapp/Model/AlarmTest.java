@@ -0,0 +1,73 @@
+package dailyreminderapp.Model;
+
+import junit.framework.TestCase;
+
+import java.util.Calendar;
+
+/**
+ * Checks when alarms go off next.
+ */
+public class AlarmTest extends TestCase {
+
+    /** Wednesday 2015-05-13 at 10:30 */
+    private long wednesdayMorning;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        wednesdayMorning = time(2015, Calendar.MAY, 13, 10, 30);
+    }
+
+    public void testLaterToday() {
+        Alarm alarm = newAlarm(18, 0, Calendar.WEDNESDAY);
+
+        assertEquals(time(2015, Calendar.MAY, 13, 18, 0), alarm.getNextFireTime(wednesdayMorning));
+    }
+
+    public void testPassedTodayGoesOffOnTheNextCheckedDay() {
+        Alarm alarm = newAlarm(8, 0, Calendar.WEDNESDAY, Calendar.FRIDAY);
+
+        assertEquals(time(2015, Calendar.MAY, 15, 8, 0), alarm.getNextFireTime(wednesdayMorning));
+    }
+
+    public void testOnlyTodayAndPassedGoesOffNextWeek() {
+        Alarm alarm = newAlarm(8, 0, Calendar.WEDNESDAY);
+
+        assertEquals(time(2015, Calendar.MAY, 20, 8, 0), alarm.getNextFireTime(wednesdayMorning));
+    }
+
+    public void testAcrossTheEndOfTheWeek() {
+        Alarm alarm = newAlarm(7, 15, Calendar.MONDAY);
+
+        assertEquals(time(2015, Calendar.MAY, 18, 7, 15), alarm.getNextFireTime(wednesdayMorning));
+    }
+
+    public void testTimeItGoesOffIsNotAfterItself() {
+        Alarm alarm = newAlarm(10, 30, Calendar.WEDNESDAY, Calendar.THURSDAY);
+
+        assertEquals(time(2015, Calendar.MAY, 14, 10, 30), alarm.getNextFireTime(wednesdayMorning));
+        assertEquals(wednesdayMorning, alarm.getNextFireTime(wednesdayMorning - 1));
+    }
+
+    public void testNoDayChecked() {
+        assertEquals(-1, newAlarm(8, 0).getNextFireTime(wednesdayMorning));
+    }
+
+    private static Alarm newAlarm(int hour, int minute, int... days) {
+        Alarm alarm = new Alarm();
+        alarm.setHour(hour);
+        alarm.setMinute(minute);
+        int mask = 0;
+        for (int day : days)
+            mask |= Alarm.dayBit(day);
+        alarm.setDaysMask(mask);
+        return alarm;
+    }
+
+    private static long time(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+}
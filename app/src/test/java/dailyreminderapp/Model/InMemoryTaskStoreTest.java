@@ -0,0 +1,12 @@
+package dailyreminderapp.Model;
+
+/**
+ * Runs the TaskStore conformance tests against the in-memory store, on the JVM.
+ */
+public class InMemoryTaskStoreTest extends TaskStoreConformanceTest {
+
+    @Override
+    protected TaskStore newStore() {
+        return new InMemoryTaskStore();
+    }
+}
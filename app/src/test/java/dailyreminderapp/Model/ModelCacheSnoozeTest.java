@@ -0,0 +1,89 @@
+package dailyreminderapp.Model;
+
+import junit.framework.TestCase;
+
+import java.util.Calendar;
+import java.util.Collections;
+
+/**
+ * Checks that the model cache puts snoozes in the order things go off together with the
+ * alarms, and keeps them as the store does.
+ */
+public class ModelCacheSnoozeTest extends TestCase {
+
+    private final ModelCache cache = ModelCache.getInstance();
+    private InMemoryTaskStore store;
+
+    /** Wednesday 2015-05-13 at 8:00, when the alarm goes off */
+    private long alarmTime;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        store = new InMemoryTaskStore();
+        Task task = new Task();
+        task.setTaskName("Vitamins");
+        long taskId = store.createTask(task);
+
+        Alarm alarm = new Alarm();
+        alarm.setTaskName("Vitamins");
+        alarm.setHour(8);
+        alarm.setDaysMask(0x7f);
+        store.createAlarm(alarm, taskId);
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2015, Calendar.MAY, 13, 8, 0);
+        alarmTime = calendar.getTimeInMillis();
+        cache.invalidate();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        cache.invalidate();
+        super.tearDown();
+    }
+
+    public void testSnoozeBeforeTheAlarmGoesOffFirst() {
+        snooze(alarmTime - 60000);
+
+        NextFire next = cache.getNextFire(store, alarmTime - 3600000);
+        assertEquals(alarmTime - 60000, next.getTime());
+        assertTrue(next.getAlarms().isEmpty());
+    }
+
+    public void testSnoozeAtTheTimeOfTheAlarmGoesOffWithIt() {
+        snooze(alarmTime);
+
+        NextFire next = cache.getNextFire(store, alarmTime - 3600000);
+        assertEquals(alarmTime, next.getTime());
+        assertEquals(1, next.getAlarms().size());
+    }
+
+    public void testSnoozesAreLoadedAndTakenWithTheStore() {
+        store.createSnooze(new Snooze("Vitamins", alarmTime - 60000));
+        assertEquals(alarmTime - 60000, cache.getNextFire(store, alarmTime - 3600000).getTime());
+
+        store.takeSnoozesUntil(alarmTime - 60000);
+        cache.removeSnoozesUntil(alarmTime - 60000);
+
+        assertEquals(alarmTime, cache.getNextFire(store, alarmTime - 3600000).getTime());
+    }
+
+    public void testDeletedTaskTakesItsSnoozes() {
+        snooze(alarmTime - 60000);
+
+        store.deleteTask("Vitamins");
+        cache.removeTasks(Collections.singletonList("Vitamins"));
+
+        assertNull(cache.getNextFire(store, alarmTime - 3600000));
+    }
+
+    /** Stores a snooze and writes it through, as TaskBox.snooze() does */
+    private void snooze(long fireAt) {
+        cache.getNextFire(store, 0); // Loads the cache, writes before that are not written through
+        Snooze snooze = new Snooze("Vitamins", fireAt);
+        store.createSnooze(snooze);
+        cache.putSnooze(snooze);
+    }
+}
@@ -0,0 +1,132 @@
+package dailyreminderapp.Model;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times the schedule index at 100,000 alarms against what it replaced: going through every
+ * alarm for the next to go off, and picking and sorting the alarms of a day. Not a test, run
+ * it on the JVM with the test classpath:
+ *
+ *     java -cp <test classes> dailyreminderapp.Model.ScheduleIndexBenchmark
+ *
+ * Each query runs for a warm-up round and then the measured rounds, printing the mean time
+ * per call. Results are summed into a sink that is printed so the calls are not optimized away.
+ */
+public class ScheduleIndexBenchmark {
+
+    private static final int ALARMS = 100000;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+    private static final long ROUND_NANOS = 1000000000L;
+
+    private static long sink;
+
+    /** One of the queries timed, called with a different argument each time */
+    private interface Query {
+        void run(int i);
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        final List<Alarm> alarms = new ArrayList<>();
+        for (int i = 0; i < ALARMS; i++) {
+            Alarm alarm = new Alarm();
+            alarm.setId(i + 1);
+            alarm.setHour(random.nextInt(24));
+            alarm.setMinute(random.nextInt(60));
+            alarm.setDaysMask(1 + random.nextInt(0x7f));
+            alarms.add(alarm);
+        }
+
+        final ScheduleIndex index = new ScheduleIndex();
+        long start = System.nanoTime();
+        index.build(alarms);
+        System.out.printf("build: %.1f ms for %d entries%n", (System.nanoTime() - start) / 1e6, index.size());
+
+        Calendar calendar = Calendar.getInstance();
+        final long now = calendar.getTimeInMillis();
+        final int nowMinute = ScheduleIndex.minuteOfWeek(calendar);
+
+        time("next fire, index", new Query() {
+            @Override
+            public void run(int i) {
+                int next = index.next((nowMinute + i) % ScheduleIndex.MINUTES_PER_WEEK);
+                sink += index.endOfMinute(next) - next;
+            }
+        });
+        time("next fire, every alarm", new Query() {
+            @Override
+            public void run(int i) {
+                long after = now + i * 60000L;
+                long time = Long.MAX_VALUE;
+                for (Alarm alarm : alarms) {
+                    long fireTime = alarm.getNextFireTime(after);
+                    if (fireTime != -1 && fireTime < time)
+                        time = fireTime;
+                }
+                sink += time;
+            }
+        });
+        time("alarms between two times, index", new Query() {
+            @Override
+            public void run(int i) {
+                int from = i % (ScheduleIndex.MINUTES_PER_WEEK - 60);
+                sink += index.lowerBound(from + 60) - index.lowerBound(from);
+            }
+        });
+        time("alarms of a day, index", new Query() {
+            @Override
+            public void run(int i) {
+                int day = i % 7 + 1;
+                int to = index.dayStart(day + 1);
+                for (int j = index.dayStart(day); j < to; j++)
+                    sink += index.idAt(j);
+            }
+        });
+        time("alarms of a day, pick and sort", new Query() {
+            @Override
+            public void run(int i) {
+                int day = i % 7 + 1;
+                List<Alarm> ofDay = new ArrayList<>();
+                for (Alarm alarm : alarms) {
+                    if ((alarm.getDaysMask() & Alarm.dayBit(day)) != 0)
+                        ofDay.add(alarm);
+                }
+                Collections.sort(ofDay);
+                sink += ofDay.size();
+            }
+        });
+
+        final Alarm changed = alarms.get(ALARMS / 2);
+        time("remove and add an alarm, index", new Query() {
+            @Override
+            public void run(int i) {
+                index.remove(changed);
+                index.add(changed);
+            }
+        });
+
+        System.out.println("sink: " + sink);
+    }
+
+    private static void time(String name, Query query) {
+        int i = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            int calls = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                query.run(i++);
+                calls++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < ROUND_NANOS);
+
+            if (round >= WARMUP_ROUNDS)
+                System.out.printf("%s: %.3f us/call%n", name, elapsed / 1e3 / calls);
+        }
+    }
+}
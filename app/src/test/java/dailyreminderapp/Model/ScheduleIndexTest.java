@@ -0,0 +1,218 @@
+package dailyreminderapp.Model;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the schedule index against the alarms it was built from, and that the model cache
+ * answers the alarms of a day and the next alarms as going through every alarm does.
+ */
+public class ScheduleIndexTest extends TestCase {
+
+    private static final int MONDAY_EIGHT = ScheduleIndex.minuteOfWeek(Calendar.MONDAY, 8, 0);
+
+    private long nextId = 1;
+
+    public void testMinuteOfWeek() {
+        assertEquals(0, ScheduleIndex.minuteOfWeek(Calendar.SUNDAY, 0, 0));
+        assertEquals(1440 + 8 * 60, MONDAY_EIGHT);
+        assertEquals(10079, ScheduleIndex.minuteOfWeek(Calendar.SATURDAY, 23, 59));
+    }
+
+    public void testOneEntryPerCheckedDay() {
+        ScheduleIndex index = new ScheduleIndex();
+        index.add(newAlarm(8, 0, Calendar.MONDAY, Calendar.WEDNESDAY));
+
+        assertEquals(2, index.size());
+        assertEquals(MONDAY_EIGHT, index.minuteAt(0));
+        assertEquals(ScheduleIndex.minuteOfWeek(Calendar.WEDNESDAY, 8, 0), index.minuteAt(1));
+    }
+
+    public void testAddingKeepsTheOrderAndAddingAgainDoesNothing() {
+        ScheduleIndex index = new ScheduleIndex();
+        Alarm late = newAlarm(9, 0, Calendar.MONDAY);
+        Alarm early = newAlarm(8, 0, Calendar.MONDAY);
+        index.add(late);
+        index.add(early);
+        index.add(early);
+
+        assertEquals(2, index.size());
+        assertEquals(early.getId(), index.idAt(0));
+        assertEquals(late.getId(), index.idAt(1));
+    }
+
+    public void testBuildMatchesAdding() {
+        List<Alarm> alarms = randomAlarms(new Random(7), 500);
+        ScheduleIndex built = new ScheduleIndex();
+        built.build(alarms);
+        ScheduleIndex added = new ScheduleIndex();
+        List<Alarm> shuffled = new ArrayList<>(alarms);
+        Collections.shuffle(shuffled, new Random(8));
+        for (Alarm alarm : shuffled)
+            added.add(alarm);
+
+        assertEntries(added, built);
+    }
+
+    public void testRemove() {
+        ScheduleIndex index = new ScheduleIndex();
+        Alarm kept = newAlarm(8, 0, Calendar.MONDAY);
+        Alarm removed = newAlarm(8, 0, Calendar.MONDAY, Calendar.FRIDAY);
+        index.add(kept);
+        index.add(removed);
+
+        index.remove(removed);
+
+        assertEquals(1, index.size());
+        assertEquals(kept.getId(), index.idAt(0));
+    }
+
+    public void testRemoveAll() {
+        List<Alarm> alarms = randomAlarms(new Random(9), 200);
+        ScheduleIndex index = new ScheduleIndex();
+        index.build(alarms);
+        ScheduleIndex expected = new ScheduleIndex();
+        expected.build(alarms.subList(100, 200));
+
+        HashSet<Long> removed = new HashSet<>();
+        for (Alarm alarm : alarms.subList(0, 100))
+            removed.add(alarm.getId());
+        index.removeAll(removed);
+
+        assertEntries(expected, index);
+    }
+
+    public void testRanges() {
+        ScheduleIndex index = new ScheduleIndex();
+        index.add(newAlarm(8, 0, Calendar.MONDAY));
+        index.add(newAlarm(12, 0, Calendar.MONDAY));
+        index.add(newAlarm(23, 59, Calendar.SATURDAY));
+
+        assertEquals(0, index.dayStart(Calendar.SUNDAY));
+        assertEquals(0, index.dayStart(Calendar.MONDAY));
+        assertEquals(2, index.dayStart(Calendar.TUESDAY));
+        assertEquals(2, index.dayStart(Calendar.SATURDAY));
+        assertEquals(3, index.dayStart(Calendar.SATURDAY + 1));
+
+        /** Monday 8:00 up to 12:00, the second not included */
+        assertEquals(0, index.lowerBound(MONDAY_EIGHT));
+        assertEquals(1, index.lowerBound(MONDAY_EIGHT + 4 * 60));
+    }
+
+    public void testNextGoesPastTheEndOfTheWeek() {
+        ScheduleIndex index = new ScheduleIndex();
+        assertEquals(-1, index.next(0));
+
+        index.add(newAlarm(8, 0, Calendar.MONDAY));
+        index.add(newAlarm(8, 0, Calendar.MONDAY));
+        index.add(newAlarm(9, 0, Calendar.MONDAY));
+
+        assertEquals(0, index.next(MONDAY_EIGHT - 1));
+        assertEquals(2, index.endOfMinute(0));
+        assertEquals(2, index.next(MONDAY_EIGHT));
+        assertEquals(0, index.next(MONDAY_EIGHT + 60));
+    }
+
+    public void testCacheAnswersAsGoingThroughEveryAlarm() {
+        Random random = new Random(11);
+        InMemoryTaskStore store = new InMemoryTaskStore();
+        Task task = new Task();
+        task.setTaskName("Vitamins");
+        long taskId = store.createTask(task);
+        List<Alarm> alarms = randomAlarms(random, 300);
+        for (Alarm alarm : alarms)
+            alarm.setTaskName("Vitamins");
+        store.createAlarms(alarms, taskId);
+
+        ModelCache cache = ModelCache.getInstance();
+        cache.invalidate();
+        try {
+            for (int day = 1; day < 8; day++) {
+                List<Alarm> expected = new ArrayList<>();
+                for (Alarm alarm : cache.getAllAlarms(store)) {
+                    if ((alarm.getDaysMask() & Alarm.dayBit(day)) != 0)
+                        expected.add(alarm);
+                }
+                Collections.sort(expected);
+                assertEquals(times(expected), times(cache.getAlarmsByDay(store, day)));
+            }
+
+            Calendar calendar = Calendar.getInstance();
+            calendar.clear();
+            calendar.set(2015, Calendar.MAY, 13);
+            long start = calendar.getTimeInMillis();
+            for (int i = 0; i < 200; i++) {
+                long after = start + (long) random.nextInt(7 * 24 * 60 * 60) * 1000;
+                NextFire next = cache.getNextFire(store, after);
+
+                long time = Long.MAX_VALUE;
+                HashSet<Long> due = new HashSet<>();
+                for (Alarm alarm : cache.getAllAlarms(store)) {
+                    long fireTime = alarm.getNextFireTime(after);
+                    if (fireTime != -1 && fireTime < time) {
+                        time = fireTime;
+                        due.clear();
+                    }
+                    if (fireTime == time)
+                        due.add(alarm.getId());
+                }
+                assertEquals(time, next.getTime());
+                HashSet<Long> nextIds = new HashSet<>();
+                for (Alarm alarm : next.getAlarms())
+                    nextIds.add(alarm.getId());
+                assertEquals(due, nextIds);
+            }
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    private Alarm newAlarm(int hour, int minute, int... days) {
+        Alarm alarm = new Alarm();
+        alarm.setId(nextId++);
+        alarm.setHour(hour);
+        alarm.setMinute(minute);
+        int mask = 0;
+        for (int day : days)
+            mask |= Alarm.dayBit(day);
+        alarm.setDaysMask(mask);
+        return alarm;
+    }
+
+    /** Alarms on whole quarter hours, so that many go off at the same minute */
+    private List<Alarm> randomAlarms(Random random, int count) {
+        List<Alarm> alarms = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Alarm alarm = newAlarm(random.nextInt(24), random.nextInt(4) * 15);
+            alarm.setDaysMask(1 + random.nextInt(0x7f));
+            alarms.add(alarm);
+        }
+        return alarms;
+    }
+
+    private static List<String> times(List<Alarm> alarms) {
+        List<String> times = new ArrayList<>();
+        for (Alarm alarm : alarms)
+            times.add(alarm.getStringTime());
+        return times;
+    }
+
+    private static void assertEntries(ScheduleIndex expected, ScheduleIndex actual) {
+        assertEquals(expected.size(), actual.size());
+        int[] expectedMinutes = new int[expected.size()];
+        int[] actualMinutes = new int[actual.size()];
+        for (int i = 0; i < expected.size(); i++) {
+            expectedMinutes[i] = expected.minuteAt(i);
+            actualMinutes[i] = actual.minuteAt(i);
+            assertEquals(expected.idAt(i), actual.idAt(i));
+        }
+        assertTrue(Arrays.equals(expectedMinutes, actualMinutes));
+    }
+}